@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import com.alipay.antchain.bridge.pluginserver.benchmark.fake.FakeBBCService;
+import com.alipay.antchain.bridge.pluginserver.server.CrossChainServiceImpl;
+import com.alipay.antchain.bridge.pluginserver.service.*;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measure the dispatch and protobuf conversion of {@code bbcCall} for each request case.
+ *
+ * <p>
+ * Run with {@code java -jar ps-benchmark/target/benchmarks.jar BBCCallBenchmark -prof gc}
+ * to get the allocation rate, and the percentiles like p99 come from the sample time mode.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BBCCallBenchmark {
+
+    @Param({"true", "false"})
+    private boolean dispatchEnabled;
+
+    @Param({"1", "16", "256"})
+    private int messagesPerHeight;
+
+    @Param({"1024"})
+    private int messageSize;
+
+    private CrossChainServiceFixture fixture;
+
+    private CrossChainServiceImpl crossChainService;
+
+    private CallBBCRequest relayAuthMessageReq;
+
+    private CallBBCRequest readCrossChainMessagesByHeightReq;
+
+    private CallBBCRequest readCrossChainMessageReceiptReq;
+
+    private CallBBCRequest querySDPMessageSeqReq;
+
+    private CallBBCRequest queryLatestHeightReq;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new CrossChainServiceFixture(new FakeBBCService(messagesPerHeight, messageSize), dispatchEnabled);
+        crossChainService = fixture.getCrossChainService();
+
+        relayAuthMessageReq = newRequest()
+                .setRelayAuthMessageReq(RelayAuthMessageRequest.newBuilder().setRawMessage(ByteString.copyFrom(new byte[messageSize])))
+                .build();
+        readCrossChainMessagesByHeightReq = newRequest()
+                .setReadCrossChainMessagesByHeightReq(ReadCrossChainMessagesByHeightRequest.newBuilder().setHeight(100))
+                .build();
+        readCrossChainMessageReceiptReq = newRequest()
+                .setReadCrossChainMessageReceiptReq(ReadCrossChainMessageReceiptRequest.newBuilder().setTxhash("txhash"))
+                .build();
+        querySDPMessageSeqReq = newRequest()
+                .setQuerySDPMessageSeqReq(QuerySDPMessageSeqRequest.newBuilder()
+                        .setSenderDomain("sender")
+                        .setFromAddress("from")
+                        .setReceiverDomain(CrossChainServiceFixture.DOMAIN)
+                        .setToAddress("to"))
+                .build();
+        queryLatestHeightReq = newRequest()
+                .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public Response relayAuthMessage() {
+        return call(relayAuthMessageReq);
+    }
+
+    @Benchmark
+    public Response readCrossChainMessagesByHeight() {
+        return call(readCrossChainMessagesByHeightReq);
+    }
+
+    @Benchmark
+    public Response readCrossChainMessageReceipt() {
+        return call(readCrossChainMessageReceiptReq);
+    }
+
+    @Benchmark
+    public Response querySDPMessageSeq() {
+        return call(querySDPMessageSeqReq);
+    }
+
+    @Benchmark
+    public Response queryLatestHeight() {
+        return call(queryLatestHeightReq);
+    }
+
+    private Response call(CallBBCRequest request) {
+        ResponseFuture responseFuture = new ResponseFuture();
+        crossChainService.bbcCall(request, responseFuture);
+        return responseFuture.join();
+    }
+
+    private static CallBBCRequest.Builder newRequest() {
+        return CallBBCRequest.newBuilder()
+                .setProduct(CrossChainServiceFixture.PRODUCT)
+                .setDomain(CrossChainServiceFixture.DOMAIN);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark;
+
+import cn.hutool.core.util.ReflectUtil;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+import com.alipay.antchain.bridge.pluginserver.benchmark.fake.FakePluginManagerWrapper;
+import com.alipay.antchain.bridge.pluginserver.server.CrossChainServiceImpl;
+import com.alipay.antchain.bridge.pluginserver.server.cache.HeightMessagesCache;
+import com.alipay.antchain.bridge.pluginserver.server.cache.LatestHeightTracker;
+import com.alipay.antchain.bridge.pluginserver.server.cache.ReceiptCache;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallCoalescer;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallDispatcher;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallLimiter;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import com.alipay.antchain.bridge.pluginserver.server.store.BBCContextStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Getter;
+import org.springframework.core.env.StandardEnvironment;
+
+/**
+ * Wire a {@link CrossChainServiceImpl} by hand without spring,
+ * with the fields set as the defaults in {@code application.yml}.
+ */
+@Getter
+public class CrossChainServiceFixture {
+
+    public static final String PRODUCT = "fakechain";
+
+    public static final String DOMAIN = "fakedomain";
+
+    private final CrossChainServiceImpl crossChainService = new CrossChainServiceImpl();
+
+    private final BBCCallDispatcher bbcCallDispatcher = new BBCCallDispatcher();
+
+    public CrossChainServiceFixture(IBBCService bbcService, boolean dispatchEnabled) {
+        this(bbcService, dispatchEnabled, false, DOMAIN);
+    }
+
+    /**
+     * @param virtualThreads run calls on virtual threads
+     * @param domain         the only domain served, or any domain if null
+     */
+    public CrossChainServiceFixture(IBBCService bbcService, boolean dispatchEnabled, boolean virtualThreads, String domain) {
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "enabled", dispatchEnabled);
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "poolSize", 32);
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "maxPendingPerLane", 1024);
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "shutdownTimeout", 10000L);
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "virtualThreads", virtualThreads);
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "environment", new StandardEnvironment());
+        ReflectUtil.setFieldValue(bbcCallDispatcher, "meterRegistry", new SimpleMeterRegistry());
+        bbcCallDispatcher.init();
+
+        FakePluginManagerWrapper pluginManagerWrapper = new FakePluginManagerWrapper(PRODUCT, domain, bbcService);
+        ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", pluginManagerWrapper);
+        ReflectUtil.setFieldValue(crossChainService, "bbcCallDispatcher", bbcCallDispatcher);
+        BBCCallCoalescer bbcCallCoalescer = new BBCCallCoalescer();
+        ReflectUtil.setFieldValue(bbcCallCoalescer, "enabled", true);
+        ReflectUtil.setFieldValue(crossChainService, "bbcCallCoalescer", bbcCallCoalescer);
+        ReflectUtil.setFieldValue(crossChainService, "bbcCallLimiter", new BBCCallLimiter(new SimpleMeterRegistry()));
+        ReflectUtil.setFieldValue(crossChainService, "bbcCallMetrics", new BBCCallMetrics(new SimpleMeterRegistry(), pluginManagerWrapper));
+        ReflectUtil.setFieldValue(crossChainService, "heightMessagesCache", new HeightMessagesCache(new SimpleMeterRegistry()));
+        ReflectUtil.setFieldValue(crossChainService, "latestHeightTracker", new LatestHeightTracker(new SimpleMeterRegistry()));
+        ReflectUtil.setFieldValue(crossChainService, "receiptCache", new ReceiptCache(new SimpleMeterRegistry()));
+        ReflectUtil.setFieldValue(crossChainService, "bbcContextStore", new BBCContextStore());
+        ReflectUtil.setFieldValue(crossChainService, "maxBatchSize", 1000);
+        ReflectUtil.setFieldValue(crossChainService, "maxInFlightPerSession", 128);
+        ReflectUtil.setFieldValue(crossChainService, "skipCancelledCalls", true);
+    }
+
+    public void close() throws InterruptedException {
+        bbcCallDispatcher.shutdown();
+    }
+}
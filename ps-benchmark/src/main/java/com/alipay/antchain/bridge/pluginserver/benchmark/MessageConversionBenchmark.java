@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import cn.hutool.core.util.ObjectUtil;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessage;
+import com.alipay.antchain.bridge.pluginserver.benchmark.fake.FakeBBCService;
+import com.alipay.antchain.bridge.pluginserver.server.CrossChainMessageConverter;
+import com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageType;
+import com.alipay.antchain.bridge.pluginserver.service.ProvableLedgerData;
+import com.alipay.antchain.bridge.pluginserver.service.ReadCrossChainMessagesByHeightResponse;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compare the allocation of converting the messages of one height into protobuf,
+ * copying every byte array versus wrapping them by {@link CrossChainMessageConverter}.
+ *
+ * <p>
+ * Run with {@code java -jar ps-benchmark/target/benchmarks.jar MessageConversionBenchmark -prof gc}
+ * and compare {@code gc.alloc.rate.norm}, the bytes allocated per response.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessageConversionBenchmark {
+
+    @Param({"1", "16", "256"})
+    private int messagesPerHeight;
+
+    @Param({"1024", "16384"})
+    private int messageSize;
+
+    private List<CrossChainMessage> messages;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        messages = new FakeBBCService(messagesPerHeight, messageSize).readCrossChainMessagesByHeight(100L);
+    }
+
+    @Benchmark
+    public ReadCrossChainMessagesByHeightResponse copy() {
+        return ReadCrossChainMessagesByHeightResponse.newBuilder()
+                .setHeight(100L)
+                .addAllMessageList(
+                        messages.stream()
+                                .map(m -> com.alipay.antchain.bridge.pluginserver.service.CrossChainMessage.newBuilder()
+                                        .setType(CrossChainMessageType.forNumber(m.getType().ordinal()))
+                                        .setMessage(ByteString.copyFrom(m.getMessage()))
+                                        .setProvableData(ProvableLedgerData.newBuilder()
+                                                .setHeight(m.getProvableData().getHeight())
+                                                .setLedgerData(ByteString.copyFrom(
+                                                        ObjectUtil.defaultIfNull(m.getProvableData().getLedgerData(), new byte[]{})))
+                                                .setProof(ByteString.copyFrom(
+                                                        ObjectUtil.defaultIfNull(m.getProvableData().getProof(), new byte[]{})))
+                                                .setBlockHash(ByteString.copyFrom(
+                                                        ObjectUtil.defaultIfNull(m.getProvableData().getBlockHash(), new byte[]{})))
+                                                .setTimestamp(m.getProvableData().getTimestamp())
+                                                .setTxHash(ByteString.copyFrom(
+                                                        ObjectUtil.defaultIfNull(m.getProvableData().getTxHash(), new byte[]{})))
+                                        ).build()
+                                ).collect(Collectors.toList())
+                ).build();
+    }
+
+    @Benchmark
+    public ReadCrossChainMessagesByHeightResponse wrap() {
+        return CrossChainMessageConverter.toReadCrossChainMessagesByHeightResp(100L, messages).build();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.alipay.antchain.bridge.pluginserver.service.Response;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Collect the response of an unary call, which may be completed on another thread.
+ */
+public class ResponseFuture implements StreamObserver<Response> {
+
+    private final CompletableFuture<Response> future = new CompletableFuture<>();
+
+    private Response response;
+
+    @Override
+    public void onNext(Response value) {
+        this.response = value;
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        future.completeExceptionally(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        future.complete(response);
+    }
+
+    public Response join() {
+        return future.join();
+    }
+}
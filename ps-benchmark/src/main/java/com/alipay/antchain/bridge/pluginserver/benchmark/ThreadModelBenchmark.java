@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.benchmark.fake.FakeBBCService;
+import com.alipay.antchain.bridge.pluginserver.server.CrossChainServiceImpl;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.VirtualThreads;
+import com.alipay.antchain.bridge.pluginserver.service.CallBBCRequest;
+import com.alipay.antchain.bridge.pluginserver.service.RelayAuthMessageRequest;
+import com.alipay.antchain.bridge.pluginserver.service.Response;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compare the platform worker threads and virtual threads of the dispatcher,
+ * with thousands of relayers calling {@code relayAuthMessage} on their own domains
+ * at the same time, each call blocking on the fake chain for {@code relayLatency}.
+ *
+ * <p>
+ * One operation is a burst of {@code relays} calls, and it takes longer if the calls
+ * have to wait for workers. The peak number of platform threads and the heap used
+ * are printed after each iteration, with {@code -prof gc} for the allocation.
+ * The virtual one needs java 21 or later.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    @Param({"platform", "virtual"})
+    private String threadModel;
+
+    @Param({"1000", "5000"})
+    private int relays;
+
+    @Param({"50"})
+    private long relayLatency;
+
+    private CrossChainServiceFixture fixture;
+
+    private CrossChainServiceImpl crossChainService;
+
+    private CallBBCRequest[] requests;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        boolean virtualThreads = StrUtil.equals(threadModel, "virtual");
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            throw new IllegalStateException(
+                    StrUtil.format("virtual threads need java 21 or later but running on java {}", System.getProperty("java.version"))
+            );
+        }
+        fixture = new CrossChainServiceFixture(new FakeBBCService(1, 1024, relayLatency), true, virtualThreads, null);
+        crossChainService = fixture.getCrossChainService();
+
+        requests = new CallBBCRequest[relays];
+        for (int i = 0; i < relays; i++) {
+            requests[i] = CallBBCRequest.newBuilder()
+                    .setProduct(CrossChainServiceFixture.PRODUCT)
+                    .setDomain(CrossChainServiceFixture.DOMAIN + i)
+                    .setRelayAuthMessageReq(RelayAuthMessageRequest.newBuilder().setRawMessage(ByteString.copyFrom(new byte[1024])))
+                    .build();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        threadMXBean.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printFootprint() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%n[%s] peak platform threads: %d, heap used: %d MB%n",
+                threadModel, threadMXBean.getPeakThreadCount(), heap.getUsed() >> 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void relayBurst(Blackhole blackhole) {
+        ResponseFuture[] responseFutures = new ResponseFuture[relays];
+        for (int i = 0; i < relays; i++) {
+            responseFutures[i] = new ResponseFuture();
+            crossChainService.bbcCall(requests[i], responseFutures[i]);
+        }
+        for (ResponseFuture responseFuture : responseFutures) {
+            Response response = responseFuture.join();
+            blackhole.consume(response);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import cn.hutool.core.util.ReflectUtil;
+import com.alipay.antchain.bridge.pluginserver.benchmark.fake.FakeBBCService;
+import com.alipay.antchain.bridge.pluginserver.server.transport.NettyServerTuning;
+import com.alipay.antchain.bridge.pluginserver.service.*;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioSocketChannel;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measure {@code readCrossChainMessagesByHeight} with responses of megabytes over a real
+ * netty server tuned by {@link NettyServerTuning}, comparing the nio and the native epoll
+ * transport and the sizes of the http2 flow control window.
+ *
+ * <p>
+ * The client uses the same transport and window as the server, as the relayer should.
+ * Run with {@code java -jar ps-benchmark/target/benchmarks.jar TransportBenchmark -t 8}
+ * for concurrent relayers. On loopback there is no latency, so the gain of a larger
+ * window is far smaller than across data centers.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransportBenchmark {
+
+    private static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+
+    @Param({"nio", "epoll"})
+    private String transport;
+
+    @Param({"1048576", "8388608"})
+    private int flowControlWindow;
+
+    @Param({"64", "256"})
+    private int messagesPerHeight;
+
+    @Param({"16384"})
+    private int messageSize;
+
+    private CrossChainServiceFixture fixture;
+
+    private NettyServerTuning nettyServerTuning;
+
+    private Server server;
+
+    private EventLoopGroup clientGroup;
+
+    private ManagedChannel channel;
+
+    private CrossChainServiceGrpc.CrossChainServiceBlockingStub stub;
+
+    private CallBBCRequest readCrossChainMessagesByHeightReq;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        fixture = new CrossChainServiceFixture(new FakeBBCService(messagesPerHeight, messageSize), true);
+
+        boolean epoll = "epoll".equals(transport);
+        nettyServerTuning = new NettyServerTuning();
+        ReflectUtil.setFieldValue(nettyServerTuning, "epoll", epoll);
+        ReflectUtil.setFieldValue(nettyServerTuning, "maxInboundMessageSize", MAX_MESSAGE_SIZE);
+        ReflectUtil.setFieldValue(nettyServerTuning, "flowControlWindow", flowControlWindow);
+        NettyServerBuilder serverBuilder = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(fixture.getCrossChainService());
+        nettyServerTuning.apply(serverBuilder, "benchmark");
+        if (epoll && !nettyServerTuning.isEpollInUse()) {
+            nettyServerTuning.shutdown();
+            throw new IllegalStateException("native epoll not available, run it on linux");
+        }
+        server = serverBuilder.build().start();
+
+        NettyChannelBuilder channelBuilder = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort())
+                .usePlaintext()
+                .maxInboundMessageSize(MAX_MESSAGE_SIZE)
+                .flowControlWindow(flowControlWindow);
+        if (epoll) {
+            clientGroup = new EpollEventLoopGroup(1);
+            channelBuilder.eventLoopGroup(clientGroup).channelType(EpollSocketChannel.class);
+        } else {
+            clientGroup = new NioEventLoopGroup(1);
+            channelBuilder.eventLoopGroup(clientGroup).channelType(NioSocketChannel.class);
+        }
+        channel = channelBuilder.build();
+        stub = CrossChainServiceGrpc.newBlockingStub(channel);
+
+        readCrossChainMessagesByHeightReq = CallBBCRequest.newBuilder()
+                .setProduct(CrossChainServiceFixture.PRODUCT)
+                .setDomain(CrossChainServiceFixture.DOMAIN)
+                .setReadCrossChainMessagesByHeightReq(ReadCrossChainMessagesByHeightRequest.newBuilder().setHeight(100))
+                .build();
+        System.out.printf("%n[transport: %s] %d bytes per response%n", transport, stub.bbcCall(readCrossChainMessagesByHeightReq).getSerializedSize());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        clientGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        nettyServerTuning.shutdown();
+        fixture.close();
+    }
+
+    @Benchmark
+    public Response readCrossChainMessagesByHeight() {
+        return stub.bbcCall(readCrossChainMessagesByHeightReq);
+    }
+}
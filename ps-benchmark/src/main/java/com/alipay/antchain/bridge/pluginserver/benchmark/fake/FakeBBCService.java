@@ -0,0 +1,142 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark.fake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.RandomUtil;
+import com.alipay.antchain.bridge.commons.bbc.AbstractBBCContext;
+import com.alipay.antchain.bridge.commons.bbc.DefaultBBCContext;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessage;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessageReceipt;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+
+/**
+ * In-memory bbc service returning prepared data without any chain access,
+ * so that only the cost of the plugin server itself is measured.
+ */
+public class FakeBBCService implements IBBCService {
+
+    private final List<CrossChainMessage> messages;
+
+    private final CrossChainMessageReceipt receipt;
+
+    private final long relayLatency;
+
+    private AbstractBBCContext context = new DefaultBBCContext();
+
+    /**
+     * @param messagesPerHeight how many messages returned by {@link #readCrossChainMessagesByHeight(long)}
+     * @param messageSize       size of message and proof of each message
+     */
+    public FakeBBCService(int messagesPerHeight, int messageSize) {
+        this(messagesPerHeight, messageSize, 0);
+    }
+
+    /**
+     * @param relayLatency milliseconds {@link #relayAuthMessage(byte[])} blocks for,
+     *                     like waiting for the chain node to accept the transaction
+     */
+    public FakeBBCService(int messagesPerHeight, int messageSize, long relayLatency) {
+        this.relayLatency = relayLatency;
+        this.messages = new ArrayList<>(messagesPerHeight);
+        for (int i = 0; i < messagesPerHeight; i++) {
+            messages.add(
+                    CrossChainMessage.createCrossChainMessage(
+                            CrossChainMessage.CrossChainMessageType.AUTH_MSG,
+                            100L,
+                            System.currentTimeMillis(),
+                            RandomUtil.randomBytes(32),
+                            RandomUtil.randomBytes(messageSize),
+                            RandomUtil.randomBytes(messageSize),
+                            RandomUtil.randomBytes(messageSize),
+                            RandomUtil.randomBytes(32)
+                    )
+            );
+        }
+
+        this.receipt = new CrossChainMessageReceipt();
+        this.receipt.setTxhash(RandomUtil.randomString(64));
+        this.receipt.setConfirmed(true);
+        this.receipt.setSuccessful(true);
+        this.receipt.setErrorMsg("");
+    }
+
+    @Override
+    public void startup(AbstractBBCContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public AbstractBBCContext getContext() {
+        return context;
+    }
+
+    @Override
+    public CrossChainMessageReceipt readCrossChainMessageReceipt(String txHash) {
+        return receipt;
+    }
+
+    @Override
+    public List<CrossChainMessage> readCrossChainMessagesByHeight(long height) {
+        return messages;
+    }
+
+    @Override
+    public long querySDPMessageSeq(String senderDomain, String fromAddress, String receiverDomain, String toAddress) {
+        return 1L;
+    }
+
+    @Override
+    public void setupAuthMessageContract() {
+    }
+
+    @Override
+    public void setupSDPMessageContract() {
+    }
+
+    @Override
+    public void setProtocol(String protocolAddress, String protocolType) {
+    }
+
+    @Override
+    public CrossChainMessageReceipt relayAuthMessage(byte[] rawMessage) {
+        if (relayLatency > 0) {
+            ThreadUtil.sleep(relayLatency);
+        }
+        return receipt;
+    }
+
+    @Override
+    public void setAmContract(String contractAddress) {
+    }
+
+    @Override
+    public Long queryLatestHeight() {
+        return 100L;
+    }
+
+    @Override
+    public void setLocalDomain(String domain) {
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.benchmark.fake;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.plugins.manager.core.IAntChainBridgePlugin;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.IPluginManagerWrapper;
+
+/**
+ * Plugin manager serving one product and one domain with the given bbc service,
+ * or any domain if the domain is null.
+ */
+public class FakePluginManagerWrapper implements IPluginManagerWrapper {
+
+    private final String product;
+
+    private final String domain;
+
+    private final IBBCService bbcService;
+
+    public FakePluginManagerWrapper(String product, String domain, IBBCService bbcService) {
+        this.product = product;
+        this.domain = domain;
+        this.bbcService = bbcService;
+    }
+
+    @Override
+    public void loadPlugins() {
+    }
+
+    @Override
+    public void startPlugins() {
+    }
+
+    @Override
+    public void loadPlugin(String path) {
+    }
+
+    @Override
+    public void startPlugin(String path) {
+    }
+
+    @Override
+    public void stopPlugin(String product) {
+    }
+
+    @Override
+    public void startPluginFromStop(String product) {
+    }
+
+    @Override
+    public void reloadPlugin(String product) {
+    }
+
+    @Override
+    public void reloadPlugin(String product, String path) {
+    }
+
+    @Override
+    public IAntChainBridgePlugin getPlugin(String product) {
+        return null;
+    }
+
+    @Override
+    public boolean hasPlugin(String product) {
+        return StrUtil.equals(this.product, product);
+    }
+
+    @Override
+    public List<String> allSupportProducts() {
+        return ListUtil.toList(product);
+    }
+
+    @Override
+    public boolean isSupportedProduct(String product) {
+        return hasPlugin(product);
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> awaitPlugin(String product) {
+        return CompletableFuture.completedFuture(hasPlugin(product));
+    }
+
+    @Override
+    public IBBCService createBBCService(String product, String domain) {
+        return bbcService;
+    }
+
+    @Override
+    public IBBCService getBBCService(String product, String domain) {
+        return hasPlugin(product) && hasDomain(domain) ? bbcService : null;
+    }
+
+    @Override
+    public IBBCService getCachedBBCService(String product, String domain) {
+        return getBBCService(product, domain);
+    }
+
+    @Override
+    public void invalidateBBCService(String product, String domain) {
+    }
+
+    @Override
+    public void restoreBBCService(String product, String domain, IBBCService bbcService) {
+    }
+
+    @Override
+    public void closeBBCServiceLogger(String product, String domain) {
+    }
+
+    @Override
+    public boolean hasDomain(String domain) {
+        return this.domain == null || StrUtil.equals(this.domain, domain);
+    }
+
+    @Override
+    public List<String> allRunningDomains() {
+        return this.domain == null ? ListUtil.empty() : ListUtil.toList(domain);
+    }
+
+    @Override
+    public List<String> allRunningDomains(String product) {
+        return this.product.equals(product) ? allRunningDomains() : ListUtil.empty();
+    }
+}
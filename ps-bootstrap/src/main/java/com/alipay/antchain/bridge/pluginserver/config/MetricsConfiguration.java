@@ -0,0 +1,97 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.PreDestroy;
+
+import cn.hutool.core.util.StrUtil;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Serve the metrics collected by the {@link PrometheusMeterRegistry} of spring boot actuator,
+ * because the plugin server runs without a web server.
+ *
+ * <p>
+ * The endpoint has no authentication, so it listens on the loopback address unless
+ * {@code pluginserver.metrics.host} is set.
+ * </p>
+ */
+@Configuration
+@Slf4j
+public class MetricsConfiguration {
+
+    @Value("${pluginserver.metrics.host:}")
+    private String metricsHost;
+
+    @Value("${pluginserver.metrics.port:9092}")
+    private int metricsPort;
+
+    @Value("${pluginserver.metrics.path:/metrics}")
+    private String metricsPath;
+
+    private HttpServer metricsServer;
+
+    @Bean(destroyMethod = "")
+    @ConditionalOnProperty(name = "pluginserver.metrics.enabled", havingValue = "true", matchIfMissing = true)
+    public HttpServer metricsServer(ObjectProvider<PrometheusMeterRegistry> prometheusMeterRegistryProvider) throws IOException {
+        // prometheus registry is not created when metrics export disabled, e.g. in tests
+        PrometheusMeterRegistry prometheusMeterRegistry = prometheusMeterRegistryProvider.getIfAvailable();
+        if (prometheusMeterRegistry == null) {
+            log.info("no prometheus registry found, metrics server not started");
+            return null;
+        }
+
+        log.info("Starting metrics server on port {} with path {}", metricsPort, metricsPath);
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(
+                        StrUtil.isEmpty(metricsHost) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(metricsHost),
+                        metricsPort
+                ),
+                0
+        );
+        server.createContext(metricsPath, exchange -> {
+            byte[] body = prometheusMeterRegistry.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        this.metricsServer = server;
+        return server;
+    }
+
+    @PreDestroy
+    public void stopMetricsServer() {
+        if (metricsServer != null) {
+            metricsServer.stop(0);
+        }
+    }
+}
@@ -22,9 +22,12 @@ import java.net.InetSocketAddress;
 
 import cn.hutool.core.util.StrUtil;
 import com.alipay.antchain.bridge.pluginserver.server.PluginManagementServiceImpl;
+import com.alipay.antchain.bridge.pluginserver.server.compression.ResponseCompression;
+import com.alipay.antchain.bridge.pluginserver.server.transport.NettyServerTuning;
 import io.grpc.Server;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -41,15 +44,38 @@ public class PluginManagerConfiguration {
     private String pluginServerMgrPort;
 
     @Bean
-    public Server pluginMgrServer(@Autowired PluginManagementServiceImpl pluginManagementService) throws IOException {
+    public Server pluginMgrServer(
+            @Autowired PluginManagementServiceImpl pluginManagementService,
+            @Autowired NettyServerTuning nettyServerTuning
+    ) throws IOException {
         log.info("Starting plugin managing server on port " + pluginServerMgrPort);
-        return NettyServerBuilder.forAddress(
-                        new InetSocketAddress(
-                                StrUtil.isEmpty(managementHost) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(managementHost),
-                                Integer.parseInt(pluginServerMgrPort)
-                        )
-                ).addService(pluginManagementService)
-                .build()
-                .start();
+        NettyServerBuilder builder = NettyServerBuilder.forAddress(
+                new InetSocketAddress(
+                        StrUtil.isEmpty(managementHost) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(managementHost),
+                        Integer.parseInt(pluginServerMgrPort)
+                )
+        ).addService(pluginManagementService);
+        nettyServerTuning.apply(builder, "management");
+        return builder.build().start();
+    }
+
+    /**
+     * Apply the transport settings to the plugin server built by grpc starter.
+     */
+    @Bean
+    public GrpcServerConfigurer nettyServerTuningConfigurer(@Autowired NettyServerTuning nettyServerTuning) {
+        return serverBuilder -> {
+            if (serverBuilder instanceof NettyServerBuilder) {
+                nettyServerTuning.apply((NettyServerBuilder) serverBuilder, "plugin");
+            }
+        };
+    }
+
+    /**
+     * Register the codecs compressing the large responses of the plugin server.
+     */
+    @Bean
+    public GrpcServerConfigurer responseCompressionConfigurer(@Autowired ResponseCompression responseCompression) {
+        return responseCompression::apply;
     }
 }
@@ -48,6 +48,9 @@ class AntChainBridgePluginManagementApplicationTests {
     private static final String TEST_PRODUCT = "testchain1";
     private static final String TEST_DOMAIN = "domain";
 
+    // bbc calls are completed on dispatcher threads
+    private static final long VERIFY_TIMEOUT = 5000;
+
     private static final String TEST_PLUGIN_PATH = Paths.get("src/test/resources/testPlugins/plugin-testchain1-0.1-SNAPSHOT-plugin.jar").toAbsolutePath().toString();
 
     @Autowired
@@ -238,8 +241,8 @@ class AntChainBridgePluginManagementApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // 8. all domain
         allDomainsRequest = AllDomainsRequest.newBuilder().build();
@@ -286,6 +289,7 @@ class AntChainBridgePluginManagementApplicationTests {
                         .build(),
                 responseStreamObserver
         );
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         request = RestartBBCRequest.newBuilder()
                 .setDomain("domain")
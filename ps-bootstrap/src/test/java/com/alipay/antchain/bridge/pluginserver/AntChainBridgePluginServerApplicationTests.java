@@ -17,25 +17,93 @@
 package com.alipay.antchain.bridge.pluginserver;
 
 import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.ReflectUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.crypto.digest.DigestUtil;
 import com.alipay.antchain.bridge.commons.bbc.AbstractBBCContext;
 import com.alipay.antchain.bridge.commons.bbc.DefaultBBCContext;
 import com.alipay.antchain.bridge.commons.bbc.syscontract.ContractStatusEnum;
 import com.alipay.antchain.bridge.commons.bbc.syscontract.SDPContract;
+import com.alipay.antchain.bridge.plugins.manager.core.IAntChainBridgePluginManager;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
 import com.alipay.antchain.bridge.pluginserver.AntChainBridgePluginServerApplication;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.AsyncBBCServiceAdapter;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.BackgroundPluginLoader;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.BBCLoggerRegistry;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.BBCServiceCache;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryProgress;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryScheduler;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryTask;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.IAsyncBBCService;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.IPluginManagerWrapper;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.LazyPluginIndex;
 import com.alipay.antchain.bridge.pluginserver.server.CrossChainServiceImpl;
 import com.alipay.antchain.bridge.pluginserver.server.ResponseBuilder;
+import com.alipay.antchain.bridge.pluginserver.server.cache.HeightMessagesCache;
+import com.alipay.antchain.bridge.pluginserver.server.compression.ResponseCompression;
+import com.alipay.antchain.bridge.pluginserver.server.compression.ZstdCodec;
+import com.alipay.antchain.bridge.pluginserver.server.cache.LatestHeightTracker;
+import com.alipay.antchain.bridge.pluginserver.server.cache.ReceiptCache;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallCoalescer;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallDispatcher;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallLimiter;
+import com.alipay.antchain.bridge.pluginserver.server.exception.ServerErrorCodeEnum;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import com.alipay.antchain.bridge.pluginserver.server.interceptor.ResponseCompressionInterceptor;
+import com.alipay.antchain.bridge.pluginserver.server.recovery.BBCDomainRecovery;
+import com.alipay.antchain.bridge.pluginserver.server.store.BBCContextStore;
+import com.alipay.antchain.bridge.pluginserver.server.transport.NettyServerTuning;
 import com.alipay.antchain.bridge.pluginserver.service.*;
 import com.alipay.antchain.bridge.pluginserver.service.*;
 import com.google.protobuf.ByteString;
+import io.grpc.Codec;
+import io.grpc.Context;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.StandardEnvironment;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
 @SpringBootTest(classes = AntChainBridgePluginServerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
 class AntChainBridgePluginServerApplicationTests {
@@ -44,9 +112,33 @@ class AntChainBridgePluginServerApplicationTests {
     private static final String TEST_PRODUCT1 = "testchain1";
     private static final String TEST_DOMAIN = "domain";
 
+    // bbc calls are completed on dispatcher threads
+    private static final long VERIFY_TIMEOUT = 5000;
+
     @Autowired
     private CrossChainServiceImpl crossChainService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private HeightMessagesCache heightMessagesCache;
+
+    @Autowired
+    private BBCCallCoalescer bbcCallCoalescer;
+
+    @Autowired
+    private LatestHeightTracker latestHeightTracker;
+
+    @Autowired
+    private ReceiptCache receiptCache;
+
+    @Autowired
+    private BBCCallLimiter bbcCallLimiter;
+
+    @Autowired
+    private BBCCallDispatcher bbcCallDispatcher;
+
     private StreamObserver<Response> responseStreamObserver;
 
     @Test
@@ -58,12 +150,12 @@ class AntChainBridgePluginServerApplicationTests {
 
         crossChainService.heartbeat(heartbeatReq, responseStreamObserver);
 
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildHeartbeatSuccessResp(
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildHeartbeatSuccessResp(
                 HeartbeatResponse.newBuilder()
                         .addAllDomains(ListUtil.toList())
                         .addAllProducts(ListUtil.toList(TEST_PRODUCT))
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -76,13 +168,13 @@ class AntChainBridgePluginServerApplicationTests {
 
         crossChainService.ifProductSupport(ifProductSupportRequest, responseStreamObserver);
 
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildIfProductSupportSuccessResp(
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildIfProductSupportSuccessResp(
                 IfProductSupportResponse.newBuilder().putAllResults(new HashMap<String, Boolean>(){{
                     put(TEST_PRODUCT, true);
                     put(TEST_PRODUCT1, false);
                 }})
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -95,12 +187,12 @@ class AntChainBridgePluginServerApplicationTests {
 
         crossChainService.ifDomainAlive(ifDomainAliveRequest, responseStreamObserver);
 
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildIfDomainAliveSuccessResp(
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildIfDomainAliveSuccessResp(
                 IfDomainAliveResponse.newBuilder().putAllResults(new HashMap<String, Boolean>(){{
                     put(TEST_DOMAIN,false);
                 }})
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -118,8 +210,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -135,8 +227,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // shut down
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -145,9 +237,9 @@ class AntChainBridgePluginServerApplicationTests {
                 .setShutdownReq(ShutdownRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver)
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT))
                 .onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // start up (startup after shutdowm)
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -156,8 +248,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -173,8 +265,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // get context
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -183,10 +275,10 @@ class AntChainBridgePluginServerApplicationTests {
                 .setGetContextReq(GetContextRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                 .setGetContextResp(GetContextResponse.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes())))
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -202,8 +294,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // set up sdp contract
         AbstractBBCContext mockDeployedCtx = mockDeployedCtx();
@@ -213,7 +305,7 @@ class AntChainBridgePluginServerApplicationTests {
                 .setSetupSDPMessageContractReq(SetupSDPMessageContractRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                 .setSetupSDPResp(SetupSDPMessageContractResponse.newBuilder()
                         .setSdpContract(
                                 SDPMessageContract.newBuilder()
@@ -222,7 +314,7 @@ class AntChainBridgePluginServerApplicationTests {
                         )
                 )
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -238,8 +330,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // set up am contract
         AbstractBBCContext mockDeployedCtx = mockDeployedCtx();
@@ -249,7 +341,7 @@ class AntChainBridgePluginServerApplicationTests {
                 .setSetupAuthMessageContractReq(SetupAuthMessageContractRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                 .setSetupAMResp(SetupAuthMessageContractResponse.newBuilder()
                         .setAmContract(
                                 AuthMessageContract.newBuilder()
@@ -257,7 +349,7 @@ class AntChainBridgePluginServerApplicationTests {
                                         .setStatusValue(mockDeployedCtx.getAuthMessageContract().getStatus().ordinal())
                         )
                 )));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -273,8 +365,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // set protocol
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -283,8 +375,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setSetProtocolReq(SetProtocolRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -300,8 +392,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // set am
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -310,8 +402,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setSetAmContractReq(SetAmContractRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -327,8 +419,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // relayer am msg
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -339,7 +431,7 @@ class AntChainBridgePluginServerApplicationTests {
                 ).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                 .setRelayAuthMessageResponse(RelayAuthMessageResponse.newBuilder()
                         .setReceipt(CrossChainMessageReceipt.newBuilder()
                                 .setTxhash(mockRet().getTxhash())
@@ -348,7 +440,7 @@ class AntChainBridgePluginServerApplicationTests {
                                 .setErrorMsg(mockRet().getErrorMsg())
                         )
                 )));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -364,8 +456,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // read crosschain msg receipt
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -376,7 +468,7 @@ class AntChainBridgePluginServerApplicationTests {
                 ).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                 .setReadCrossChainMessageReceiptResp(
                         ReadCrossChainMessageReceiptResponse.newBuilder()
                                 .setReceipt(
@@ -388,7 +480,7 @@ class AntChainBridgePluginServerApplicationTests {
                                 )
                 )
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
 
@@ -406,8 +498,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // ReadCrossChainMessagesByHeight
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -418,8 +510,993 @@ class AntChainBridgePluginServerApplicationTests {
                 ).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(Mockito.any());
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(Mockito.any());
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+    }
+
+    @Test
+    @DirtiesContext
+    public void test_ReadCrossChainMessagesByHeightRange(){
+        CallBBCRequest callBBCRequest;
+
+        // start up (create and startup)
+        AbstractBBCContext mockInitCtx = mockInitCtx();
+        callBBCRequest = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT)
+                .setDomain(TEST_DOMAIN)
+                .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
+        responseStreamObserver = Mockito.mock(StreamObserver.class);
+        crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+
+        // read heights 0 to 2
+        ServerCallStreamObserver<Response> rangeStreamObserver = Mockito.mock(ServerCallStreamObserver.class);
+        Mockito.when(rangeStreamObserver.isReady()).thenReturn(true);
+        crossChainService.readCrossChainMessagesByHeightRange(
+                ReadCrossChainMessagesByHeightRangeRequest.newBuilder()
+                        .setProduct(TEST_PRODUCT)
+                        .setDomain(TEST_DOMAIN)
+                        .setFromHeight(0)
+                        .setToHeight(2)
+                        .build(),
+                rangeStreamObserver
+        );
+        Mockito.verify(rangeStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+        Mockito.verify(rangeStreamObserver, Mockito.times(3)).onNext(Mockito.any());
+    }
+
+    @Test
+    @DirtiesContext
+    public void test_BatchBBCCall(){
+        AbstractBBCContext mockInitCtx = mockInitCtx();
+
+        // start up and relay am msg in one batch
+        BatchCallBBCRequest batchCallBBCRequest = BatchCallBBCRequest.newBuilder()
+                .addRequests(CallBBCRequest.newBuilder()
+                        .setProduct(TEST_PRODUCT)
+                        .setDomain(TEST_DOMAIN)
+                        .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))))
+                .addRequests(CallBBCRequest.newBuilder()
+                        .setProduct(TEST_PRODUCT)
+                        .setDomain(TEST_DOMAIN)
+                        .setRelayAuthMessageReq(
+                                RelayAuthMessageRequest.newBuilder().setRawMessage(ByteString.copyFrom("msg".getBytes()))
+                        ))
+                .build();
+        responseStreamObserver = Mockito.mock(StreamObserver.class);
+        crossChainService.batchBbcCall(batchCallBBCRequest, responseStreamObserver);
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBatchBBCSuccessResp(
+                BatchCallBBCResponse.newBuilder()
+                        .addResponses(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()))
+                        .addResponses(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                                .setRelayAuthMessageResponse(RelayAuthMessageResponse.newBuilder()
+                                        .setReceipt(CrossChainMessageReceipt.newBuilder()
+                                                .setTxhash(mockRet().getTxhash())
+                                                .setConfirmed(mockRet().isConfirmed())
+                                                .setSuccessful(mockRet().isSuccessful())
+                                                .setErrorMsg(mockRet().getErrorMsg())
+                                        )
+                                )))
+        ));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+    }
+
+    @Test
+    @DirtiesContext
+    public void test_BBCCallSession(){
+        AbstractBBCContext mockInitCtx = mockInitCtx();
+
+        ServerCallStreamObserver<BBCSessionResponse> sessionResponseObserver = Mockito.mock(ServerCallStreamObserver.class);
+        StreamObserver<BBCSessionRequest> sessionRequestObserver = crossChainService.bbcCallSession(sessionResponseObserver);
+
+        // open session
+        sessionRequestObserver.onNext(BBCSessionRequest.newBuilder()
+                .setCallId(1)
+                .setOpenReq(OpenBBCSessionRequest.newBuilder().setProduct(TEST_PRODUCT).setDomain(TEST_DOMAIN))
+                .build());
+        Mockito.verify(sessionResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(BBCSessionResponse.newBuilder()
+                .setCallId(1)
+                .setResp(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()))
+                .build());
+
+        // start up and query sdp msg seq
+        sessionRequestObserver.onNext(BBCSessionRequest.newBuilder()
+                .setCallId(2)
+                .setCallReq(CallBBCRequest.newBuilder()
+                        .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))))
+                .build());
+        sessionRequestObserver.onNext(BBCSessionRequest.newBuilder()
+                .setCallId(3)
+                .setCallReq(CallBBCRequest.newBuilder()
+                        .setQuerySDPMessageSeqReq(QuerySDPMessageSeqRequest.newBuilder()))
+                .build());
+        sessionRequestObserver.onCompleted();
+
+        Mockito.verify(sessionResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(BBCSessionResponse.newBuilder()
+                .setCallId(2)
+                .setResp(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()))
+                .build());
+        Mockito.verify(sessionResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(BBCSessionResponse.newBuilder()
+                .setCallId(3)
+                .setResp(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                        .setQuerySDPMsgSeqResp(QuerySDPMessageSeqResponse.newBuilder().setSequence(0))))
+                .build());
+        Mockito.verify(sessionResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+    }
+
+    @Test
+    public void test_BBCCallSession_ServiceReloaded(){
+        IPluginManagerWrapper pluginManagerWrapper = (IPluginManagerWrapper) ReflectUtil.getFieldValue(crossChainService, "pluginManagerWrapper");
+        IPluginManagerWrapper mockPluginManagerWrapper = Mockito.mock(IPluginManagerWrapper.class);
+        IBBCService oldBBCService = Mockito.mock(IBBCService.class);
+        IBBCService newBBCService = Mockito.mock(IBBCService.class);
+        Mockito.when(mockPluginManagerWrapper.hasPlugin(TEST_PRODUCT)).thenReturn(true);
+        Mockito.when(mockPluginManagerWrapper.getCachedBBCService(TEST_PRODUCT, "session_domain"))
+                .thenReturn(oldBBCService, newBBCService);
+        ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", mockPluginManagerWrapper);
+        try {
+            ServerCallStreamObserver<BBCSessionResponse> sessionResponseObserver = Mockito.mock(ServerCallStreamObserver.class);
+            StreamObserver<BBCSessionRequest> sessionRequestObserver = crossChainService.bbcCallSession(sessionResponseObserver);
+            sessionRequestObserver.onNext(BBCSessionRequest.newBuilder()
+                    .setCallId(1)
+                    .setOpenReq(OpenBBCSessionRequest.newBuilder().setProduct(TEST_PRODUCT).setDomain("session_domain"))
+                    .build());
+
+            // the service of domain reloaded between calls is used by the following call
+            for (int i = 2; i < 4; i++) {
+                long callId = i;
+                sessionRequestObserver.onNext(BBCSessionRequest.newBuilder()
+                        .setCallId(callId)
+                        .setCallReq(CallBBCRequest.newBuilder().setGetContextReq(GetContextRequest.newBuilder()))
+                        .build());
+                Mockito.verify(sessionResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(Mockito.argThat(
+                        resp -> resp.getCallId() == callId
+                ));
+            }
+            Mockito.verify(oldBBCService).getContext();
+            Mockito.verify(newBBCService).getContext();
+        } finally {
+            ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", pluginManagerWrapper);
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    public void test_BBCCallMetrics(){
+        // query height of a product not supported, which is not used as tag
+        CallBBCRequest callBBCRequest = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(TEST_DOMAIN)
+                .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder())
+                .build();
+        String[] unknownTags = new String[]{"product", BBCCallMetrics.UNKNOWN, "domain", BBCCallMetrics.UNKNOWN};
+        Timer timer = meterRegistry.find("pluginserver.bbc.call").tags(unknownTags).tags("case", "queryLatestHeightReq").timer();
+        long countBefore = ObjectUtil.isNull(timer) ? 0 : timer.count();
+        Counter counter = meterRegistry.find("pluginserver.bbc.call.errors").tags(unknownTags).tags("code", ServerErrorCodeEnum.BBC_PLUGIN_NOT_SUPPORT.name()).counter();
+        double errorsBefore = ObjectUtil.isNull(counter) ? 0 : counter.count();
+
+        responseStreamObserver = Mockito.mock(StreamObserver.class);
+        crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+
+        Assertions.assertEquals(countBefore + 1, meterRegistry.get("pluginserver.bbc.call")
+                .tags(unknownTags).tags("case", "queryLatestHeightReq")
+                .timer().count());
+        Assertions.assertEquals(errorsBefore + 1, meterRegistry.get("pluginserver.bbc.call.errors")
+                .tags(unknownTags).tags("code", ServerErrorCodeEnum.BBC_PLUGIN_NOT_SUPPORT.name())
+                .counter().count());
+        Assertions.assertEquals(0, meterRegistry.get("pluginserver.bbc.call.in.flight")
+                .tags(unknownTags)
+                .gauge().value());
+        Assertions.assertNull(meterRegistry.find("pluginserver.bbc.call").tags("product", TEST_PRODUCT1).timer());
+    }
+
+    @Test
+    public void test_BBCCallMetrics_DomainShutDown(){
+        String metricsDomain = "metrics_domain";
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IPluginManagerWrapper mockPluginManagerWrapper = Mockito.mock(IPluginManagerWrapper.class);
+        Mockito.when(mockPluginManagerWrapper.isSupportedProduct(TEST_PRODUCT1)).thenReturn(true);
+        Mockito.when(mockPluginManagerWrapper.getCachedBBCService(TEST_PRODUCT1, metricsDomain))
+                .thenReturn(Mockito.mock(IBBCService.class));
+        BBCCallMetrics metrics = new BBCCallMetrics(registry, mockPluginManagerWrapper);
+
+        CallBBCRequest request = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(metricsDomain)
+                .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder())
+                .build();
+        Response failResp = ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR);
+        metrics.start(request).stop(failResp);
+        BBCCallMetrics.Sample inFlightSample = metrics.start(request);
+        Assertions.assertEquals(1, registry.get("pluginserver.bbc.call").tags("domain", metricsDomain).timer().count());
+        Assertions.assertEquals(1, registry.get("pluginserver.bbc.call.errors").tags("domain", metricsDomain).counter().count());
+        Assertions.assertEquals(1, registry.get("pluginserver.bbc.call.in.flight").tags("domain", metricsDomain).gauge().value());
+
+        // the unknown domain of a supported product is tagged without taking the lock of plugins
+        metrics.start(request.toBuilder().setDomain("metrics_domain_unknown").build()).stop(failResp);
+        Assertions.assertNotNull(registry.find("pluginserver.bbc.call")
+                .tags("product", TEST_PRODUCT1, "domain", BBCCallMetrics.UNKNOWN).timer());
+        Mockito.verify(mockPluginManagerWrapper, Mockito.never()).hasPlugin(Mockito.anyString());
+
+        // all meters of the domain shut down are removed, and never registered again by the call in flight
+        metrics.remove(TEST_PRODUCT1, metricsDomain);
+        inFlightSample.stop(failResp);
+        Assertions.assertTrue(registry.getMeters().stream()
+                .noneMatch(meter -> metricsDomain.equals(meter.getId().getTag("domain"))));
+        Assertions.assertNotNull(registry.find("pluginserver.bbc.call")
+                .tags("product", TEST_PRODUCT1, "domain", BBCCallMetrics.UNKNOWN).timer());
+    }
+
+    @Test
+    public void test_HeightMessagesCache(){
+        Response resp = ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                .setReadCrossChainMessagesByHeightResp(ReadCrossChainMessagesByHeightResponse.newBuilder().setHeight(98)));
+
+        // nothing cached before the latest height known
+        heightMessagesCache.put(TEST_PRODUCT1, TEST_DOMAIN, 98, resp);
+        Assertions.assertNull(heightMessagesCache.get(TEST_PRODUCT1, TEST_DOMAIN, 98));
+
+        // confirmation depth is 2 in test
+        heightMessagesCache.updateLatestHeight(TEST_PRODUCT1, TEST_DOMAIN, 100);
+        heightMessagesCache.put(TEST_PRODUCT1, TEST_DOMAIN, 99, resp);
+        Assertions.assertNull(heightMessagesCache.get(TEST_PRODUCT1, TEST_DOMAIN, 99));
+        heightMessagesCache.put(TEST_PRODUCT1, TEST_DOMAIN, 98, resp);
+        Assertions.assertEquals(resp, heightMessagesCache.get(TEST_PRODUCT1, TEST_DOMAIN, 98));
+
+        // failed responses are never cached
+        heightMessagesCache.put(TEST_PRODUCT1, TEST_DOMAIN, 97, ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR));
+        Assertions.assertNull(heightMessagesCache.get(TEST_PRODUCT1, TEST_DOMAIN, 97));
+
+        heightMessagesCache.invalidate(TEST_PRODUCT1, TEST_DOMAIN);
+        Assertions.assertNull(heightMessagesCache.get(TEST_PRODUCT1, TEST_DOMAIN, 98));
+
+        // the cache never enabled with zero confirmation depth, which would cache the latest height
+        HeightMessagesCache zeroDepthCache = new HeightMessagesCache(new SimpleMeterRegistry());
+        ReflectUtil.setFieldValue(zeroDepthCache, "enabled", true);
+        ReflectUtil.setFieldValue(zeroDepthCache, "confirmationDepth", 0);
+        ReflectUtil.setFieldValue(zeroDepthCache, "maxBytes", 1024);
+        zeroDepthCache.init();
+        zeroDepthCache.updateLatestHeight(TEST_PRODUCT1, TEST_DOMAIN, 100);
+        zeroDepthCache.put(TEST_PRODUCT1, TEST_DOMAIN, 100, resp);
+        Assertions.assertNull(zeroDepthCache.get(TEST_PRODUCT1, TEST_DOMAIN, 100));
+
+        Assertions.assertTrue(meterRegistry.get("cache.gets")
+                .tags("cache", HeightMessagesCache.CACHE_NAME, "result", "hit")
+                .functionCounter().count() >= 1);
+    }
+
+    @Test
+    public void test_BBCCallCoalescer(){
+        CallBBCRequest queryHeightReq = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(TEST_DOMAIN)
+                .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder())
+                .build();
+        Response resp = ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                .setQueryLatestHeightResponse(QueryLatestHeightResponse.newBuilder().setHeight(100)));
+
+        // the identical read follows the one in flight
+        BBCCallCoalescer.CoalescedCall leader = bbcCallCoalescer.join(queryHeightReq);
+        BBCCallCoalescer.CoalescedCall follower = bbcCallCoalescer.join(queryHeightReq);
+        Assertions.assertTrue(leader.isLeader());
+        Assertions.assertFalse(follower.isLeader());
+        // the leader can not be given up with a follower
+        Assertions.assertFalse(leader.abandon());
+
+        // the read after a write for the domain never follows the one before the write
+        Assertions.assertTrue(bbcCallCoalescer.join(CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(TEST_DOMAIN)
+                .setRelayAuthMessageReq(RelayAuthMessageRequest.newBuilder())
+                .build()).isLeader());
+        BBCCallCoalescer.CoalescedCall leaderAfterWrite = bbcCallCoalescer.join(queryHeightReq);
+        Assertions.assertTrue(leaderAfterWrite.isLeader());
+
+        Response[] followerResp = new Response[1];
+        follower.whenDone(r -> followerResp[0] = r);
+        Assertions.assertNull(followerResp[0]);
+        leader.complete(resp);
+        Assertions.assertEquals(resp, followerResp[0]);
+
+        leaderAfterWrite.complete(resp);
+        Assertions.assertEquals(0, bbcCallCoalescer.inFlightCalls());
+
+        // the read in flight before the domain shut down is never followed after
+        String shutDomain = "coalesce_shut_domain";
+        CallBBCRequest shutDomainReq = queryHeightReq.toBuilder().setDomain(shutDomain).build();
+        int trackedDomains = bbcCallCoalescer.trackedDomains();
+        BBCCallCoalescer.CoalescedCall leaderBeforeShutdown = bbcCallCoalescer.join(shutDomainReq);
+        Assertions.assertEquals(trackedDomains + 1, bbcCallCoalescer.trackedDomains());
+        bbcCallCoalescer.invalidate(TEST_PRODUCT1, shutDomain);
+        Assertions.assertEquals(trackedDomains, bbcCallCoalescer.trackedDomains());
+        BBCCallCoalescer.CoalescedCall leaderAfterShutdown = bbcCallCoalescer.join(shutDomainReq);
+        Assertions.assertTrue(leaderAfterShutdown.isLeader());
+        leaderBeforeShutdown.complete(resp);
+        leaderAfterShutdown.complete(resp);
+        bbcCallCoalescer.invalidate(TEST_PRODUCT1, shutDomain);
+        Assertions.assertEquals(0, bbcCallCoalescer.inFlightCalls());
+        Assertions.assertEquals(trackedDomains, bbcCallCoalescer.trackedDomains());
+
+        // only the latest height, sdp sequence and receipt reads are coalesced
+        CallBBCRequest readByHeightReq = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(TEST_DOMAIN)
+                .setReadCrossChainMessagesByHeightReq(ReadCrossChainMessagesByHeightRequest.newBuilder().setHeight(10))
+                .build();
+        Assertions.assertTrue(bbcCallCoalescer.join(readByHeightReq).isLeader());
+        Assertions.assertTrue(bbcCallCoalescer.join(readByHeightReq).isLeader());
+        Assertions.assertEquals(0, bbcCallCoalescer.inFlightCalls());
+    }
+
+    @Test
+    public void test_LatestHeightTracker() throws InterruptedException {
+        String trackedDomain = "tracked_domain";
+        Assertions.assertNull(latestHeightTracker.get(TEST_PRODUCT1, trackedDomain));
+
+        // refreshed in background once tracked, refresh interval is 100ms in test
+        CountDownLatch refreshed = new CountDownLatch(2);
+        Runnable refresher = new Runnable() {
+            @Override
+            public void run() {
+                refreshed.countDown();
+                latestHeightTracker.update(TEST_PRODUCT1, trackedDomain, 101, this);
+            }
+        };
+        latestHeightTracker.update(TEST_PRODUCT1, trackedDomain, 100, refresher);
+        Assertions.assertEquals(100L, latestHeightTracker.get(TEST_PRODUCT1, trackedDomain));
+        Assertions.assertTrue(refreshed.await(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(101L, latestHeightTracker.get(TEST_PRODUCT1, trackedDomain));
+        Assertions.assertTrue(meterRegistry.get("pluginserver.bbc.latest.height.lag")
+                .tags("product", TEST_PRODUCT1, "domain", trackedDomain)
+                .gauge().value() < VERIFY_TIMEOUT);
+
+        latestHeightTracker.untrack(TEST_PRODUCT1, trackedDomain);
+        Assertions.assertNull(latestHeightTracker.get(TEST_PRODUCT1, trackedDomain));
+        Assertions.assertNull(meterRegistry.find("pluginserver.bbc.latest.height.lag")
+                .tags("product", TEST_PRODUCT1, "domain", trackedDomain)
+                .gauge());
+    }
+
+    @Test
+    public void test_ReceiptCache(){
+        com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt receipt =
+                com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt.newBuilder()
+                        .setTxhash("txhash")
+                        .setSuccessful(true)
+                        .setErrorMsg("")
+                        .build();
+
+        // unconfirmed receipts are never cached
+        receiptCache.put(TEST_PRODUCT1, TEST_DOMAIN, receipt.getTxhash(), receipt);
+        Assertions.assertNull(receiptCache.get(TEST_PRODUCT1, TEST_DOMAIN, receipt.getTxhash()));
+
+        receipt = receipt.toBuilder().setConfirmed(true).build();
+        receiptCache.put(TEST_PRODUCT1, TEST_DOMAIN, receipt.getTxhash(), receipt);
+        Assertions.assertEquals(receipt, receiptCache.get(TEST_PRODUCT1, TEST_DOMAIN, receipt.getTxhash()));
+
+        // served from memory even the product not supported
+        CallBBCRequest callBBCRequest = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(TEST_DOMAIN)
+                .setReadCrossChainMessageReceiptReq(ReadCrossChainMessageReceiptRequest.newBuilder().setTxhash(receipt.getTxhash()))
+                .build();
+        responseStreamObserver = Mockito.mock(StreamObserver.class);
+        crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(
+                CallBBCResponse.newBuilder().setReadCrossChainMessageReceiptResp(
+                        ReadCrossChainMessageReceiptResponse.newBuilder().setReceipt(receipt)
+                )
+        ));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+
+        receiptCache.invalidate(TEST_PRODUCT1, TEST_DOMAIN);
+        Assertions.assertNull(receiptCache.get(TEST_PRODUCT1, TEST_DOMAIN, receipt.getTxhash()));
+    }
+
+    @Test
+    public void test_BBCCallLimiter(){
+        String limitedDomain = "limited_domain";
+
+        // max-in-flight of a domain is 8 in test
+        List<BBCCallLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            BBCCallLimiter.Permit permit = bbcCallLimiter.tryAcquire(TEST_PRODUCT1, limitedDomain);
+            Assertions.assertNotNull(permit);
+            permits.add(permit);
+        }
+        Assertions.assertNull(bbcCallLimiter.tryAcquire(TEST_PRODUCT1, limitedDomain));
+        // other domains not affected
+        BBCCallLimiter.Permit otherPermit = bbcCallLimiter.tryAcquire(TEST_PRODUCT1, TEST_DOMAIN);
+        Assertions.assertNotNull(otherPermit);
+        otherPermit.release();
+
+        CallBBCRequest callBBCRequest = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain(limitedDomain)
+                .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder())
+                .build();
+        // unary calls rejected with grpc status by default
+        responseStreamObserver = Mockito.mock(StreamObserver.class);
+        crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onError(Mockito.argThat(
+                e -> Status.fromThrowable(e).getCode() == Status.Code.RESOURCE_EXHAUSTED
+        ));
+        Mockito.verify(responseStreamObserver, Mockito.never()).onNext(Mockito.any());
+
+        // calls in a batch rejected with error code in response
+        StreamObserver<Response> batchResponseObserver = Mockito.mock(StreamObserver.class);
+        crossChainService.batchBbcCall(BatchCallBBCRequest.newBuilder().addRequests(callBBCRequest).build(), batchResponseObserver);
+        Mockito.verify(batchResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBatchBBCSuccessResp(
+                BatchCallBBCResponse.newBuilder().addResponses(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_CALL_OVERLOADED))
+        ));
+        Mockito.verify(batchResponseObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+
+        permits.forEach(BBCCallLimiter.Permit::release);
+        BBCCallLimiter.Permit permit = bbcCallLimiter.tryAcquire(TEST_PRODUCT1, limitedDomain);
+        Assertions.assertNotNull(permit);
+        permit.release();
+    }
+
+    @Test
+    public void test_BBCCallDispatcher_IdleLanes() throws Exception {
+        BBCCallDispatcher dispatcher = new BBCCallDispatcher();
+        ReflectUtil.setFieldValue(dispatcher, "enabled", true);
+        ReflectUtil.setFieldValue(dispatcher, "poolSize", 2);
+        ReflectUtil.setFieldValue(dispatcher, "maxPendingPerLane", 16);
+        ReflectUtil.setFieldValue(dispatcher, "shutdownTimeout", VERIFY_TIMEOUT);
+        ReflectUtil.setFieldValue(dispatcher, "environment", new StandardEnvironment());
+        dispatcher.init();
+
+        // lanes of the mistyped or churned domains are dropped once idle
+        CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(dispatcher.dispatch(TEST_PRODUCT, "churned_domain_" + i, done::countDown));
+        }
+        Assertions.assertTrue(done.await(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS));
+        long deadline = System.currentTimeMillis() + VERIFY_TIMEOUT;
+        while (dispatcher.activeLanes() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(0, dispatcher.activeLanes());
+        dispatcher.shutdown();
+
+        BBCCallLimiter limiter = new BBCCallLimiter(new SimpleMeterRegistry());
+        ReflectUtil.setFieldValue(limiter, "enabled", true);
+        ReflectUtil.setFieldValue(limiter, "domainMaxInFlight", 8);
+        ReflectUtil.setFieldValue(limiter, "productMaxInFlight", 64);
+        for (int i = 0; i < 100; i++) {
+            BBCCallLimiter.Permit permit = limiter.tryAcquire(TEST_PRODUCT, "churned_domain_" + i);
+            Assertions.assertNotNull(permit);
+            permit.release();
+        }
+        Assertions.assertEquals(0, limiter.trackedLimits());
+    }
+
+    @Test
+    public void test_BBCCallDispatcher_ProductWorkers() throws Exception {
+        // testchain1 has its own pool in test
+        CompletableFuture<String> productThread = new CompletableFuture<>();
+        Assertions.assertTrue(bbcCallDispatcher.dispatch(TEST_PRODUCT1, TEST_DOMAIN, () -> productThread.complete(Thread.currentThread().getName())));
+        Assertions.assertTrue(productThread.get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS).startsWith("bbc-call-worker-" + TEST_PRODUCT1 + "-"));
+
+        CompletableFuture<String> sharedThread = new CompletableFuture<>();
+        Assertions.assertTrue(bbcCallDispatcher.dispatch(TEST_PRODUCT, TEST_DOMAIN, () -> sharedThread.complete(Thread.currentThread().getName())));
+        Assertions.assertFalse(sharedThread.get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS).startsWith("bbc-call-worker-" + TEST_PRODUCT1 + "-"));
+
+        Assertions.assertEquals(2, meterRegistry.get("executor.pool.core")
+                .tags("name", "bbc-call-worker", "product", TEST_PRODUCT1)
+                .gauge().value());
+    }
+
+    @Test
+    public void test_BBCCallDispatcher_Async() throws Exception {
+        String asyncDomain = "async_domain";
+        CompletableFuture<Void> chainCall = new CompletableFuture<>();
+        CompletableFuture<String> asyncThread = new CompletableFuture<>();
+        Assertions.assertTrue(bbcCallDispatcher.dispatchAsync(TEST_PRODUCT1, asyncDomain, () -> {
+            asyncThread.complete(Thread.currentThread().getName());
+            return chainCall;
+        }));
+        asyncThread.get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        // the next call of the lane waits for the async one, while the worker is free for other lanes
+        CountDownLatch nextCall = new CountDownLatch(1);
+        Assertions.assertTrue(bbcCallDispatcher.dispatch(TEST_PRODUCT1, asyncDomain, nextCall::countDown));
+        CountDownLatch otherLaneCall = new CountDownLatch(1);
+        Assertions.assertTrue(bbcCallDispatcher.dispatch(TEST_PRODUCT1, TEST_DOMAIN, otherLaneCall::countDown));
+        Assertions.assertTrue(otherLaneCall.await(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS));
+        Assertions.assertFalse(nextCall.await(100, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(2, bbcCallDispatcher.pendingCalls(TEST_PRODUCT1, asyncDomain));
+
+        chainCall.complete(null);
+        Assertions.assertTrue(nextCall.await(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void test_AsyncBBCServiceAdapter() {
+        IBBCService bbcService = Mockito.mock(IBBCService.class);
+        Mockito.when(bbcService.queryLatestHeight()).thenReturn(100L);
+        Mockito.when(bbcService.readCrossChainMessageReceipt("txhash")).thenThrow(new RuntimeException("chain down"));
+
+        IAsyncBBCService asyncBBCService = AsyncBBCServiceAdapter.of(bbcService, Runnable::run);
+        Assertions.assertEquals(100L, asyncBBCService.queryLatestHeightAsync().join());
+        CompletionException e = Assertions.assertThrows(CompletionException.class, () -> asyncBBCService.readCrossChainMessageReceiptAsync("txhash").join());
+        Assertions.assertEquals("chain down", e.getCause().getMessage());
+
+        // asynchronous plugins are called directly
+        IBBCService nativeAsyncBBCService = Mockito.mock(IBBCService.class, Mockito.withSettings().extraInterfaces(IAsyncBBCService.class));
+        Assertions.assertSame(nativeAsyncBBCService, AsyncBBCServiceAdapter.of(nativeAsyncBBCService, Runnable::run));
+    }
+
+    @Test
+    public void test_BBCLoggerRegistry() throws Exception {
+        AtomicInteger created = new AtomicInteger(0);
+        ch.qos.logback.core.read.ListAppender<ch.qos.logback.classic.spi.ILoggingEvent> appender = new ch.qos.logback.core.read.ListAppender<>();
+        appender.start();
+        BBCLoggerRegistry registry = new BBCLoggerRegistry((product, domain) -> {
+            created.incrementAndGet();
+            ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(BBCLoggerRegistry.getLoggerName(product, domain));
+            logger.addAppender(appender);
+            return logger;
+        });
+
+        // domain starting up concurrently gets one logger
+        int threads = 8;
+        ExecutorService startups = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<CompletableFuture<Logger>> loggers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            loggers.add(CompletableFuture.supplyAsync(() -> {
+                ready.countDown();
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return registry.getOrCreate(TEST_PRODUCT, "logger_domain");
+            }, startups));
+        }
+        for (CompletableFuture<Logger> logger : loggers) {
+            Assertions.assertSame(loggers.get(0).get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS), logger.get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+        Assertions.assertEquals(1, created.get());
+        startups.shutdown();
+
+        // appenders stopped once the domain shut down
+        registry.close(TEST_PRODUCT, "logger_domain");
+        Assertions.assertFalse(appender.isStarted());
+        registry.getOrCreate(TEST_PRODUCT, "logger_domain");
+        Assertions.assertEquals(2, created.get());
+        registry.closeAll();
+    }
+
+    @Test
+    public void test_BackgroundPluginLoader() throws Exception {
+        Path repo = Files.createTempDirectory("plugins");
+        for (int i = 0; i < 3; i++) {
+            try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(repo.resolve("plugin-" + i + ".jar")))) {
+                jar.putNextEntry(new JarEntry("plugin.properties"));
+                jar.write(("plugin.id=plugin-" + i).getBytes());
+                jar.closeEntry();
+            }
+        }
+        Files.write(repo.resolve("broken.jar"), "not a jar".getBytes());
+
+        IAntChainBridgePluginManager manager = Mockito.mock(IAntChainBridgePluginManager.class);
+        AtomicInteger readyNotified = new AtomicInteger();
+        BackgroundPluginLoader loader = new BackgroundPluginLoader(manager, repo, 2, readyNotified::incrementAndGet);
+        CompletableFuture<Void> done = loader.start();
+        Assertions.assertTrue(loader.awaitFirstReady(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS));
+        done.get(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        // broken jar skipped before it reaches the manager
+        Assertions.assertEquals(3, loader.getReadyCount());
+        Assertions.assertEquals(3, readyNotified.get());
+        for (int i = 0; i < 3; i++) {
+            Mockito.verify(manager).loadPlugin(repo.resolve("plugin-" + i + ".jar"));
+            Mockito.verify(manager).startPlugin(repo.resolve("plugin-" + i + ".jar"));
+        }
+        Mockito.verify(manager, Mockito.never()).loadPlugin(repo.resolve("broken.jar"));
+        Mockito.verify(manager, Mockito.never()).startPlugin(repo.resolve("broken.jar"));
+        FileUtil.del(repo);
+    }
+
+    @Test
+    public void test_BBCServiceCache() {
+        BBCServiceCache cache = new BBCServiceCache();
+        IBBCService oldBBCService = Mockito.mock(IBBCService.class);
+        IBBCService otherBBCService = Mockito.mock(IBBCService.class);
+        cache.put(TEST_PRODUCT, "cached_domain", oldBBCService);
+        cache.put(TEST_PRODUCT, "other_domain", otherBBCService);
+
+        // the domain started again with another product leaves no service behind
+        cache.invalidateDomain("cached_domain");
+        Assertions.assertNull(cache.get(TEST_PRODUCT, "cached_domain"));
+        Assertions.assertSame(otherBBCService, cache.get(TEST_PRODUCT, "other_domain"));
+
+        cache.invalidateProduct(TEST_PRODUCT);
+        Assertions.assertNull(cache.get(TEST_PRODUCT, "other_domain"));
+    }
+
+    @Test
+    public void test_Heartbeat_PluginsLoading() {
+        IPluginManagerWrapper pluginManagerWrapper = (IPluginManagerWrapper) ReflectUtil.getFieldValue(crossChainService, "pluginManagerWrapper");
+        IPluginManagerWrapper mockPluginManagerWrapper = Mockito.mock(IPluginManagerWrapper.class);
+        Mockito.when(mockPluginManagerWrapper.isReady()).thenReturn(false);
+        Mockito.when(mockPluginManagerWrapper.allSupportProducts()).thenReturn(ListUtil.toList("chain_ready"));
+        Mockito.when(mockPluginManagerWrapper.hasPlugin("chain_ready")).thenReturn(true);
+        ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", mockPluginManagerWrapper);
+        try {
+            // answered with the plugins loaded so far while the others still loading in background
+            responseStreamObserver = Mockito.mock(StreamObserver.class);
+            crossChainService.heartbeat(Empty.newBuilder().build(), responseStreamObserver);
+            Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildHeartbeatSuccessResp(
+                    HeartbeatResponse.newBuilder().addProducts("chain_ready")
+            ));
+            Mockito.verify(responseStreamObserver).onCompleted();
+
+            responseStreamObserver = Mockito.mock(StreamObserver.class);
+            crossChainService.ifProductSupport(
+                    IfProductSupportRequest.newBuilder().addProducts("chain_ready").addProducts("chain_loading").build(),
+                    responseStreamObserver
+            );
+            Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildIfProductSupportSuccessResp(
+                    IfProductSupportResponse.newBuilder().putResults("chain_ready", true).putResults("chain_loading", false)
+            ));
+            Mockito.verify(responseStreamObserver).onCompleted();
+        } finally {
+            ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", pluginManagerWrapper);
+        }
+    }
+
+    @Test
+    public void test_LazyPluginIndex() throws Exception {
+        Path repo = Files.createTempDirectory("plugins");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(LazyPluginIndex.MANIFEST_PRODUCTS, "chain_a, chain_b");
+        new JarOutputStream(Files.newOutputStream(repo.resolve("lazy.jar")), manifest).close();
+        new JarOutputStream(Files.newOutputStream(repo.resolve("eager.jar"))).close();
+
+        LazyPluginIndex index = new LazyPluginIndex();
+        Assertions.assertEquals(Collections.singletonList(repo.resolve("eager.jar")), index.index(repo));
+        Assertions.assertTrue(index.contains("chain_a"));
+        Assertions.assertTrue(index.contains("chain_b"));
+
+        // a jar failing to load stays indexed and is retried
+        IAntChainBridgePluginManager manager = Mockito.mock(IAntChainBridgePluginManager.class);
+        Mockito.doThrow(new RuntimeException("disk busy")).doNothing().when(manager).loadPlugin(repo.resolve("lazy.jar"));
+        Assertions.assertThrows(RuntimeException.class, () -> index.ensureLoaded("chain_a", manager));
+        Assertions.assertTrue(index.contains("chain_a"));
+        Mockito.verify(manager, Mockito.never()).startPlugin(repo.resolve("lazy.jar"));
+
+        // loaded once on the first use of any product of the jar
+        index.ensureLoaded("chain_a", manager);
+        index.ensureLoaded("chain_b", manager);
+        Mockito.verify(manager, Mockito.times(2)).loadPlugin(repo.resolve("lazy.jar"));
+        Mockito.verify(manager, Mockito.times(1)).startPlugin(repo.resolve("lazy.jar"));
+        Assertions.assertTrue(index.products().isEmpty());
+        FileUtil.del(repo);
+    }
+
+    @Test
+    public void test_BBCContextStore() throws Exception {
+        Path dir = Files.createTempDirectory("contexts");
+        Path path = dir.resolve("contexts.log");
+
+        BBCContextStore store = newBBCContextStore(path);
+        store.save(TEST_PRODUCT, "domain_a", new byte[]{1});
+        store.save(TEST_PRODUCT, "domain_a", new byte[]{2});
+        store.save(TEST_PRODUCT, "domain_b", new byte[]{3});
+        store.remove(TEST_PRODUCT, "domain_b");
+        store.shutdown();
+        // torn record written when killed
+        Files.write(path, new byte[]{0, 0, 0, 64, 1, 2}, StandardOpenOption.APPEND);
+        long sizeBeforeCompact = Files.size(path);
+
+        // only the latest context of domain_a left, and the file compacted on boot
+        store = newBBCContextStore(path);
+        List<BBCContextStore.ContextSnapshot> snapshots = store.snapshots();
+        Assertions.assertEquals(1, snapshots.size());
+        Assertions.assertEquals("domain_a", snapshots.get(0).getDomain());
+        Assertions.assertArrayEquals(new byte[]{2}, snapshots.get(0).getRawContext());
+        Assertions.assertTrue(Files.size(path) < sizeBeforeCompact);
+        // contexts hold the keys of chain clients
+        if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Assertions.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(path)));
+        }
+
+        // appending again after compaction
+        store.save(TEST_PRODUCT, "domain_c", new byte[]{4});
+        store.shutdown();
+        store = newBBCContextStore(path);
+        Assertions.assertEquals(2, store.snapshots().size());
+
+        // activity of a domain dropped once it shut down
+        store.touch(TEST_PRODUCT, "domain_c");
+        Assertions.assertTrue(store.getLastActiveTime(TEST_PRODUCT, "domain_c") > 0);
+        store.remove(TEST_PRODUCT, "domain_c");
+        Assertions.assertEquals(0, store.getLastActiveTime(TEST_PRODUCT, "domain_c"));
+        store.shutdown();
+
+        // nothing tracked when disabled
+        BBCContextStore disabledStore = new BBCContextStore();
+        disabledStore.touch(TEST_PRODUCT, "domain_d");
+        Assertions.assertEquals(0, disabledStore.getLastActiveTime(TEST_PRODUCT, "domain_d"));
+        FileUtil.del(dir);
+    }
+
+    private BBCContextStore newBBCContextStore(Path path) throws Exception {
+        BBCContextStore store = new BBCContextStore();
+        ReflectUtil.setFieldValue(store, "enabled", true);
+        ReflectUtil.setFieldValue(store, "path", path.toString());
+        ReflectUtil.setFieldValue(store, "compactInterval", 60000L);
+        ReflectUtil.setFieldValue(store, "activityPersistInterval", 1800000L);
+        store.init();
+        return store;
+    }
+
+    @Test
+    public void test_DomainRecoveryScheduler() throws Exception {
+        // one at a time, the most recent domain first
+        DomainRecoveryScheduler scheduler = newDomainRecoveryScheduler(1, 0);
+        List<String> started = Collections.synchronizedList(new ArrayList<>());
+        scheduler.submit(ListUtil.toList(
+                new DomainRecoveryTask("chain_a", "domain_1", 1, () -> started.add("domain_1")),
+                new DomainRecoveryTask("chain_a", "domain_3", 3, () -> started.add("domain_3")),
+                new DomainRecoveryTask("chain_b", "domain_2", 2, () -> started.add("domain_2")),
+                new DomainRecoveryTask("chain_b", "domain_4", 4, () -> started.add("domain_4")),
+                new DomainRecoveryTask("chain_b", "domain_0", 0, () -> {
+                    throw new RuntimeException("chain down");
+                })
+        ));
+        awaitRecovery(scheduler);
+        Assertions.assertEquals(ListUtil.toList("domain_4", "domain_3", "domain_2", "domain_1"), started);
+        DomainRecoveryProgress progress = scheduler.getProgress();
+        Assertions.assertEquals(5, progress.getTotal());
+        Assertions.assertEquals(4, progress.getRecovered());
+        Assertions.assertEquals(1, progress.getFailed());
+        Assertions.assertTrue(progress.getFailures().containsKey("chain_b::domain_0"));
+        Assertions.assertTrue(progress.getFinishTime() >= progress.getStartTime());
+        scheduler.shutdown();
+
+        // 10 per second for a product, no matter how many workers
+        scheduler = newDomainRecoveryScheduler(4, 10);
+        List<Long> startTimes = Collections.synchronizedList(new ArrayList<>());
+        List<DomainRecoveryTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new DomainRecoveryTask("chain_a", "domain_" + i, i, () -> startTimes.add(System.currentTimeMillis())));
+        }
+        tasks.add(new DomainRecoveryTask("chain_b", "domain_skipped", 0, () -> false));
+        scheduler.submit(tasks);
+        awaitRecovery(scheduler);
+        Assertions.assertEquals(3, startTimes.size());
+        Assertions.assertTrue(startTimes.get(2) - startTimes.get(0) >= 190);
+        Assertions.assertEquals(1, scheduler.getProgress().getSkipped());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void test_BBCDomainRecovery_PluginLoading() throws Exception {
+        Path dir = Files.createTempDirectory("contexts");
+        BBCContextStore store = newBBCContextStore(dir.resolve("contexts.log"));
+        store.save("chain_slow", "slow_domain", mockInitCtx().encodeToBytes());
+
+        // the plugin of the saved domain still loading in background on boot
+        IPluginManagerWrapper mockPluginManagerWrapper = Mockito.mock(IPluginManagerWrapper.class);
+        CompletableFuture<Boolean> pluginLoading = new CompletableFuture<>();
+        Mockito.when(mockPluginManagerWrapper.awaitPlugin("chain_slow")).thenReturn(pluginLoading);
+        IBBCService bbcService = Mockito.mock(IBBCService.class);
+        Mockito.when(mockPluginManagerWrapper.createBBCService("chain_slow", "slow_domain")).thenReturn(bbcService);
+        DomainRecoveryScheduler scheduler = newDomainRecoveryScheduler(1, 0);
+
+        BBCDomainRecovery recovery = new BBCDomainRecovery();
+        ReflectUtil.setFieldValue(recovery, "recoverOnBoot", true);
+        ReflectUtil.setFieldValue(recovery, "bbcContextStore", store);
+        ReflectUtil.setFieldValue(recovery, "pluginManagerWrapper", mockPluginManagerWrapper);
+        ReflectUtil.setFieldValue(recovery, "bbcCallDispatcher", bbcCallDispatcher);
+        ReflectUtil.setFieldValue(recovery, "domainRecoveryScheduler", scheduler);
+        recovery.init();
+        Thread.sleep(200);
+        Mockito.verify(mockPluginManagerWrapper, Mockito.never()).createBBCService(Mockito.anyString(), Mockito.anyString());
+
+        // recovered once the plugin ready
+        Mockito.when(mockPluginManagerWrapper.hasPlugin("chain_slow")).thenReturn(true);
+        pluginLoading.complete(true);
+        Mockito.verify(bbcService, Mockito.timeout(VERIFY_TIMEOUT)).startup(Mockito.any());
+        scheduler.shutdown();
+        store.shutdown();
+        FileUtil.del(dir);
+    }
+
+    @Test
+    public void test_BBCDomainRecovery_Restart() throws Exception {
+        IPluginManagerWrapper mockPluginManagerWrapper = Mockito.mock(IPluginManagerWrapper.class);
+        Mockito.when(mockPluginManagerWrapper.hasDomain(Mockito.anyString())).thenReturn(true);
+        IBBCService oldBBCService = Mockito.mock(IBBCService.class);
+        IBBCService newBBCService = Mockito.mock(IBBCService.class);
+        IBBCService brokenBBCService = Mockito.mock(IBBCService.class);
+        Mockito.doThrow(new RuntimeException("chain node down")).when(brokenBBCService).startup(Mockito.any());
+        Mockito.when(mockPluginManagerWrapper.getBBCService(Mockito.eq(TEST_PRODUCT), Mockito.anyString())).thenReturn(oldBBCService);
+        Mockito.when(mockPluginManagerWrapper.createBBCService(TEST_PRODUCT, "restarted_domain")).thenReturn(newBBCService);
+        Mockito.when(mockPluginManagerWrapper.createBBCService(TEST_PRODUCT, "broken_domain")).thenReturn(brokenBBCService);
+        DomainRecoveryScheduler scheduler = newDomainRecoveryScheduler(1, 0);
+
+        BBCDomainRecovery recovery = new BBCDomainRecovery();
+        ReflectUtil.setFieldValue(recovery, "bbcContextStore", new BBCContextStore());
+        ReflectUtil.setFieldValue(recovery, "pluginManagerWrapper", mockPluginManagerWrapper);
+        ReflectUtil.setFieldValue(recovery, "bbcCallDispatcher", bbcCallDispatcher);
+        ReflectUtil.setFieldValue(recovery, "domainRecoveryScheduler", scheduler);
+        ReflectUtil.setFieldValue(recovery, "heightMessagesCache", heightMessagesCache);
+        ReflectUtil.setFieldValue(recovery, "latestHeightTracker", latestHeightTracker);
+        ReflectUtil.setFieldValue(recovery, "receiptCache", receiptCache);
+
+        // the old service shut down once the new one started
+        recovery.restartDomains(TEST_PRODUCT, ListUtil.toList("restarted_domain"));
+        Mockito.verify(oldBBCService, Mockito.timeout(VERIFY_TIMEOUT)).shutdown();
+        InOrder inOrder = Mockito.inOrder(newBBCService, oldBBCService);
+        inOrder.verify(newBBCService).startup(Mockito.any());
+        inOrder.verify(oldBBCService).shutdown();
+
+        // the old service kept serving if the new one failed to start
+        recovery.restartDomains(TEST_PRODUCT, ListUtil.toList("broken_domain"));
+        Mockito.verify(brokenBBCService, Mockito.timeout(VERIFY_TIMEOUT)).shutdown();
+        Mockito.verify(mockPluginManagerWrapper).restoreBBCService(TEST_PRODUCT, "broken_domain", oldBBCService);
+        Mockito.verify(oldBBCService, Mockito.times(1)).shutdown();
+        scheduler.shutdown();
+    }
+
+    private DomainRecoveryScheduler newDomainRecoveryScheduler(int parallelism, double ratePerProduct) {
+        DomainRecoveryScheduler scheduler = new DomainRecoveryScheduler();
+        ReflectUtil.setFieldValue(scheduler, "parallelism", parallelism);
+        ReflectUtil.setFieldValue(scheduler, "ratePerProduct", ratePerProduct);
+        ReflectUtil.setFieldValue(scheduler, "environment", new StandardEnvironment());
+        scheduler.init();
+        return scheduler;
+    }
+
+    private void awaitRecovery(DomainRecoveryScheduler scheduler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + VERIFY_TIMEOUT;
+        while (!scheduler.getProgress().isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(scheduler.getProgress().isFinished());
+    }
+
+    @Test
+    public void test_NettyServerTuning() throws Exception {
+        NettyServerTuning tuning = new NettyServerTuning();
+        ReflectUtil.setFieldValue(tuning, "epoll", true);
+        ReflectUtil.setFieldValue(tuning, "workerThreads", 2);
+        ReflectUtil.setFieldValue(tuning, "maxInboundMessageSize", 16 * 1024 * 1024);
+
+        // event loops shared by both servers, epoll if available
+        NettyServerBuilder builder1 = NettyServerBuilder.forPort(0);
+        NettyServerBuilder builder2 = NettyServerBuilder.forPort(0);
+        tuning.apply(builder1, "test1");
+        tuning.apply(builder2, "test2");
+        Server server1 = builder1.build().start();
+        Server server2 = builder2.build().start();
+        Assertions.assertEquals(Epoll.isAvailable(), tuning.isEpollInUse());
+        Assertions.assertTrue(server1.getPort() > 0);
+        Assertions.assertTrue(server2.getPort() > 0);
+
+        server1.shutdownNow().awaitTermination(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS);
+        server2.shutdownNow().awaitTermination(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS);
+        tuning.shutdown();
+    }
+
+    @Test
+    public void test_ResponseCompression() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResponseCompression compression = new ResponseCompression(registry);
+        ReflectUtil.setFieldValue(compression, "enabled", true);
+        ReflectUtil.setFieldValue(compression, "codecs", new String[]{"zstd", "gzip"});
+        ReflectUtil.setFieldValue(compression, "minResponseSize", 64 * 1024);
+        ReflectUtil.setFieldValue(compression, "zstdLevel", 3);
+        compression.init();
+
+        // large responses for bbc calls, small ones for heartbeats
+        Response largeResp = Response.newBuilder().setErrorMsg(StrUtil.repeat("crosschain message", 16 * 1024)).build();
+        Response smallResp = ResponseBuilder.buildHeartbeatSuccessResp(HeartbeatResponse.newBuilder());
+        CrossChainServiceGrpc.CrossChainServiceImplBase service = new CrossChainServiceGrpc.CrossChainServiceImplBase() {
+            @Override
+            public void bbcCall(CallBBCRequest request, StreamObserver<Response> responseObserver) {
+                responseObserver.onNext(largeResp);
+                responseObserver.onCompleted();
+            }
+
+            @Override
+            public void heartbeat(Empty request, StreamObserver<Response> responseObserver) {
+                responseObserver.onNext(smallResp);
+                responseObserver.onCompleted();
+            }
+        };
+        NettyServerBuilder serverBuilder = NettyServerBuilder.forPort(0)
+                .addService(ServerInterceptors.intercept(service, new ResponseCompressionInterceptor(compression)));
+        compression.apply(serverBuilder);
+        Server server = serverBuilder.build().start();
+
+        // zstd registered, gzip only by default, and none accepted
+        ManagedChannel zstdChannel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext()
+                .decompressorRegistry(DecompressorRegistry.getDefaultInstance().with(new ZstdCodec(3), true))
+                .build();
+        ManagedChannel gzipChannel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext().build();
+        ManagedChannel identityChannel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext()
+                .decompressorRegistry(DecompressorRegistry.emptyInstance().with(Codec.Identity.NONE, false))
+                .build();
+        try {
+            CallBBCRequest request = CallBBCRequest.newBuilder().setProduct(TEST_PRODUCT).setDomain(TEST_DOMAIN).build();
+            Assertions.assertEquals(largeResp, CrossChainServiceGrpc.newBlockingStub(zstdChannel).bbcCall(request));
+            Assertions.assertEquals(smallResp, CrossChainServiceGrpc.newBlockingStub(zstdChannel).heartbeat(Empty.getDefaultInstance()));
+            Assertions.assertEquals(largeResp, CrossChainServiceGrpc.newBlockingStub(gzipChannel).bbcCall(request));
+            Assertions.assertEquals(largeResp, CrossChainServiceGrpc.newBlockingStub(identityChannel).bbcCall(request));
+        } finally {
+            zstdChannel.shutdownNow();
+            gzipChannel.shutdownNow();
+            identityChannel.shutdownNow();
+            server.shutdownNow().awaitTermination(VERIFY_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        Assertions.assertEquals(1, registry.get("pluginserver.compression.responses").tag("codec", "zstd").counter().count());
+        Assertions.assertEquals(1, registry.get("pluginserver.compression.responses").tag("codec", "gzip").counter().count());
+        Assertions.assertEquals(2, registry.get("pluginserver.compression.responses").tag("codec", ResponseCompression.IDENTITY).counter().count());
+        for (String codec : ListUtil.toList("zstd", "gzip")) {
+            double raw = registry.get("pluginserver.compression.bytes").tag("codec", codec).tag("stage", "raw").counter().count();
+            double compressed = registry.get("pluginserver.compression.bytes").tag("codec", codec).tag("stage", "compressed").counter().count();
+            Assertions.assertEquals(largeResp.getSerializedSize(), raw);
+            Assertions.assertTrue(compressed > 0 && compressed < raw / 10);
+        }
+    }
+
+    @Test
+    @DirtiesContext
+    public void test_BBCCall_PluginError(){
+        IPluginManagerWrapper pluginManagerWrapper = (IPluginManagerWrapper) ReflectUtil.getFieldValue(crossChainService, "pluginManagerWrapper");
+        IPluginManagerWrapper mockPluginManagerWrapper = Mockito.mock(IPluginManagerWrapper.class);
+        IBBCService bbcService = Mockito.mock(IBBCService.class);
+        Mockito.when(bbcService.getContext()).thenThrow(new NoClassDefFoundError("com/example/Missing"));
+        Mockito.when(mockPluginManagerWrapper.getCachedBBCService(TEST_PRODUCT, "error_domain")).thenReturn(bbcService);
+        ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", mockPluginManagerWrapper);
+        try {
+            CallBBCRequest callBBCRequest = CallBBCRequest.newBuilder()
+                    .setProduct(TEST_PRODUCT)
+                    .setDomain("error_domain")
+                    .setGetContextReq(GetContextRequest.newBuilder())
+                    .build();
+
+            // errors thrown by the classloader of plugin are answered, and the lane goes on
+            for (int i = 0; i < 2; i++) {
+                responseStreamObserver = Mockito.mock(StreamObserver.class);
+                crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
+                Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(Mockito.argThat(
+                        resp -> resp.getCode() == ServerErrorCodeEnum.UNKNOWN_ERROR.getErrorCode()
+                ));
+                Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
+            }
+        } finally {
+            ReflectUtil.setFieldValue(crossChainService, "pluginManagerWrapper", pluginManagerWrapper);
+        }
+    }
+
+    @Test
+    public void test_BBCCall_Cancelled(){
+        CallBBCRequest callBBCRequest = CallBBCRequest.newBuilder()
+                .setProduct(TEST_PRODUCT1)
+                .setDomain("cancelled_domain")
+                .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder())
+                .build();
+        responseStreamObserver = Mockito.mock(StreamObserver.class);
+
+        // relayer gone before the call handled
+        Context.CancellableContext context = Context.current().withCancellation();
+        context.cancel(null);
+        context.run(() -> crossChainService.bbcCall(callBBCRequest, responseStreamObserver));
+
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_CALL_CANCELLED));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -435,8 +1512,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // QuerySDPMessageSeq
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -446,12 +1523,12 @@ class AntChainBridgePluginServerApplicationTests {
                 ).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                 .setQuerySDPMsgSeqResp(QuerySDPMessageSeqResponse.newBuilder()
                         .setSequence(0)
                 )
         ));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     @Test
@@ -467,8 +1544,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setStartUpReq(StartUpRequest.newBuilder().setRawContext(ByteString.copyFrom(mockInitCtx.encodeToBytes()))).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()));
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
 
         // QueryLatestHeightRequest
         callBBCRequest = CallBBCRequest.newBuilder()
@@ -477,8 +1554,8 @@ class AntChainBridgePluginServerApplicationTests {
                 .setQueryLatestHeightReq(QueryLatestHeightRequest.newBuilder()).build();
         responseStreamObserver = Mockito.mock(StreamObserver.class);
         crossChainService.bbcCall(callBBCRequest, responseStreamObserver);
-        Mockito.verify(responseStreamObserver).onNext(Mockito.any());
-        Mockito.verify(responseStreamObserver).onCompleted();
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onNext(Mockito.any());
+        Mockito.verify(responseStreamObserver, Mockito.timeout(VERIFY_TIMEOUT)).onCompleted();
     }
 
     // mock data ======================================================
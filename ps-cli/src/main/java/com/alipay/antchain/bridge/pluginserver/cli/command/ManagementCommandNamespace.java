@@ -95,4 +95,18 @@ public class ManagementCommandNamespace extends GroovyScriptCommandNamespace {
     ) {
         return queryAPI("restartBBC", product, domain);
     }
+
+    Object recoverDomains(
+            @ArgsConstraint(name = "product") String product,
+            @ArgsConstraint(name = "domains...") String... domains
+    ) {
+        String[] args = new String[domains.length + 1];
+        args[0] = product;
+        System.arraycopy(domains, 0, args, 1, domains.length);
+        return queryAPI("recoverDomains", args);
+    }
+
+    Object recoveryProgress() {
+        return queryAPI("recoveryProgress");
+    }
 }
@@ -18,10 +18,14 @@ package com.alipay.antchain.bridge.pluginserver.cli.core;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.date.DateUtil;
 import com.alibaba.fastjson.JSON;
 import com.alipay.antchain.bridge.pluginserver.managementservice.*;
 import io.grpc.ManagedChannel;
@@ -130,4 +134,36 @@ public class ManagementGrpcClient {
         }
         return "success";
     }
+
+    public String recoverDomains(String product, List<String> domains) {
+        ManageResponse response = this.blockingStub.recoverDomains(
+                RecoverDomainsRequest.newBuilder()
+                        .setProduct(product)
+                        .addAllDomains(domains)
+                        .build()
+        );
+        if (response.getCode() != 0) {
+            return "failed with msg: " + response.getErrorMsg();
+        }
+        return response.getRecoverDomainsResp().getQueued() + " domains queued, check it by `manage.recoveryProgress()`";
+    }
+
+    public String getRecoveryProgress() {
+        ManageResponse response = this.blockingStub.recoveryProgress(RecoveryProgressRequest.newBuilder().build());
+        if (response.getCode() != 0) {
+            return "failed with msg: " + response.getErrorMsg();
+        }
+        RecoveryProgressResp progress = response.getRecoveryProgressResp();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", progress.getTotal());
+        result.put("recovered", progress.getRecovered());
+        result.put("skipped", progress.getSkipped());
+        result.put("failed", progress.getFailed());
+        result.put("running", progress.getRunning());
+        result.put("queued", progress.getQueued());
+        result.put("startTime", progress.getStartTime() == 0 ? "" : DateUtil.formatDateTime(new Date(progress.getStartTime())));
+        result.put("finishTime", progress.getFinishTime() == 0 ? "" : DateUtil.formatDateTime(new Date(progress.getFinishTime())));
+        result.put("failures", progress.getFailuresMap());
+        return JSON.toJSONString(result);
+    }
 }
@@ -194,6 +194,16 @@ public abstract class GroovyScriptCommandNamespace extends CommandNamespaceImpl
                     return "wrong length of arguments";
                 }
                 return Shell.RUNTIME.getGrpcClient().restartBBC(args[0], args[1]);
+            case "recoverDomains":
+                if (args.length == 0) {
+                    return "zero arguments";
+                }
+                return Shell.RUNTIME.getGrpcClient().recoverDomains(args[0], ListUtil.sub(ListUtil.toList(args), 1, args.length));
+            case "recoveryProgress":
+                if (args.length != 0) {
+                    return "wrong length of arguments";
+                }
+                return Shell.RUNTIME.getGrpcClient().getRecoveryProgress();
             default:
                 return "wrong command " + command;
         }
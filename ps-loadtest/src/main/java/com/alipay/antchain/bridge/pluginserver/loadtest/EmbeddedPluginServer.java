@@ -0,0 +1,47 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import java.nio.file.Paths;
+
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.AntChainBridgePluginServerApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Run the real plugin server in this process, listening on localhost with TLS.
+ */
+public class EmbeddedPluginServer {
+
+    public static ConfigurableApplicationContext start(int port, int managementPort, String pluginRepo, String certsDir) {
+        String certs = Paths.get(certsDir).toAbsolutePath().toString();
+        return new SpringApplicationBuilder(AntChainBridgePluginServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(
+                        "--grpc.server.address=127.0.0.1",
+                        "--grpc.server.port=" + port,
+                        StrUtil.format("--grpc.server.security.certificate-chain=file:{}/server.crt", certs),
+                        StrUtil.format("--grpc.server.security.private-key=file:{}/server.key", certs),
+                        StrUtil.format("--grpc.server.security.trustCertCollection=file:{}/trust.crt", certs),
+                        "--pluginserver.plugin.repo=" + Paths.get(pluginRepo).toAbsolutePath(),
+                        "--pluginserver.managerserver.host=127.0.0.1",
+                        "--pluginserver.managerserver.port=" + managementPort
+                );
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.alipay.antchain.bridge.pluginserver.service.*;
+import com.google.protobuf.ByteString;
+import lombok.Getter;
+
+/**
+ * Requests sent by the load generator, named after the request cases of {@code bbcCall}.
+ */
+@Getter
+public enum LoadCase {
+
+    HEARTBEAT("heartbeat"),
+
+    QUERY_LATEST_HEIGHT("queryLatestHeight"),
+
+    READ_CROSS_CHAIN_MESSAGES_BY_HEIGHT("readCrossChainMessagesByHeight"),
+
+    READ_CROSS_CHAIN_MESSAGE_RECEIPT("readCrossChainMessageReceipt"),
+
+    RELAY_AUTH_MESSAGE("relayAuthMessage"),
+
+    QUERY_SDP_MESSAGE_SEQ("querySDPMessageSeq");
+
+    private final String caseName;
+
+    LoadCase(String caseName) {
+        this.caseName = caseName;
+    }
+
+    public static LoadCase parse(String caseName) {
+        for (LoadCase loadCase : values()) {
+            if (loadCase.caseName.equalsIgnoreCase(caseName)) {
+                return loadCase;
+            }
+        }
+        throw new IllegalArgumentException("unknown load case: " + caseName);
+    }
+
+    /**
+     * Build the bbc call of this case, not for {@link #HEARTBEAT}.
+     *
+     * @param latestHeight latest height of the domain known by the client
+     * @param rawMessage   auth message to relay
+     */
+    public CallBBCRequest buildBBCRequest(String product, String domain, long latestHeight, ByteString rawMessage) {
+        CallBBCRequest.Builder builder = CallBBCRequest.newBuilder()
+                .setProduct(product)
+                .setDomain(domain);
+        switch (this) {
+            case QUERY_LATEST_HEIGHT:
+                return builder.setQueryLatestHeightReq(QueryLatestHeightRequest.getDefaultInstance()).build();
+            case READ_CROSS_CHAIN_MESSAGES_BY_HEIGHT:
+                return builder.setReadCrossChainMessagesByHeightReq(
+                        ReadCrossChainMessagesByHeightRequest.newBuilder()
+                                .setHeight(latestHeight <= 0 ? 0 : ThreadLocalRandom.current().nextLong(latestHeight + 1))
+                ).build();
+            case READ_CROSS_CHAIN_MESSAGE_RECEIPT:
+                return builder.setReadCrossChainMessageReceiptReq(
+                        ReadCrossChainMessageReceiptRequest.newBuilder()
+                                .setTxhash(String.format("%064x", ThreadLocalRandom.current().nextLong(Long.MAX_VALUE)))
+                ).build();
+            case RELAY_AUTH_MESSAGE:
+                return builder.setRelayAuthMessageReq(
+                        RelayAuthMessageRequest.newBuilder()
+                                .setRawMessage(rawMessage)
+                ).build();
+            case QUERY_SDP_MESSAGE_SEQ:
+                return builder.setQuerySDPMessageSeqReq(
+                        QuerySDPMessageSeqRequest.newBuilder()
+                                .setSenderDomain("sender")
+                                .setFromAddress("from")
+                                .setReceiverDomain(domain)
+                                .setToAddress("to")
+                ).build();
+            default:
+                throw new IllegalStateException("not a bbc call: " + caseName);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.service.CallBBCRequest;
+import com.alipay.antchain.bridge.pluginserver.service.Response;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drive the plugin server from many relayer clients concurrently.
+ *
+ * <p>
+ * It is a closed loop: every client keeps {@code concurrency} calls in flight,
+ * and a new call is sent once a response comes back. The request case and
+ * the domain of every call are picked randomly with the weights of the mix.
+ * </p>
+ */
+@Slf4j
+public class LoadGenerator {
+
+    private final LoadTestOptions options;
+
+    private final LoadStats stats = new LoadStats();
+
+    private final List<RelayerClient> clients = new ArrayList<>();
+
+    private final List<String> domains = new ArrayList<>();
+
+    private final Map<String, AtomicLong> latestHeights = new ConcurrentHashMap<>();
+
+    private final LoadCase[] weightedCases;
+
+    private final ByteString rawMessage;
+
+    private volatile boolean stopped = false;
+
+    private CountDownLatch loopsDone;
+
+    public LoadGenerator(LoadTestOptions options) {
+        this.options = options;
+        this.weightedCases = buildWeightedCases(options.getMix());
+        this.rawMessage = ByteString.copyFrom(RandomUtil.randomBytes(options.getMessageSize()));
+        for (int i = 0; i < options.getDomainNum(); i++) {
+            domains.add(StrUtil.format("loadtest-domain-{}", i));
+        }
+    }
+
+    public void run() throws InterruptedException {
+        for (int i = 0; i < options.getClientNum(); i++) {
+            clients.add(new RelayerClient(options.getHost(), options.getPort(), options.getCertsDir(), options.getAuthority(), options.isPlaintext()));
+        }
+
+        RelayerClient admin = clients.get(0);
+        for (String domain : domains) {
+            admin.startUp(options.getProduct(), domain, options.getChainConf());
+            latestHeights.put(domain, new AtomicLong(admin.queryLatestHeight(options.getProduct(), domain)));
+        }
+        log.info("{} domains of {} started", domains.size(), options.getProduct());
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("loadtest-reporter-").setDaemon(true).build()
+        );
+        loopsDone = new CountDownLatch(options.getClientNum() * options.getConcurrency());
+        for (RelayerClient client : clients) {
+            for (int i = 0; i < options.getConcurrency(); i++) {
+                new CallLoop(client).next();
+            }
+        }
+        System.out.printf(
+                "%d clients x %d calls in flight, warm up for %d s and run for %d s%n%n",
+                options.getClientNum(), options.getConcurrency(), options.getWarmupSeconds(), options.getDurationSeconds()
+        );
+
+        TimeUnit.SECONDS.sleep(options.getWarmupSeconds());
+        stats.startRecording();
+        long startTime = System.currentTimeMillis();
+        long interval = TimeUnit.SECONDS.toMillis(options.getReportIntervalSeconds());
+        reporter.scheduleAtFixedRate(
+                () -> stats.printInterval(System.out, interval),
+                interval, interval, TimeUnit.MILLISECONDS
+        );
+
+        TimeUnit.SECONDS.sleep(options.getDurationSeconds());
+        stats.stopRecording();
+        reporter.shutdown();
+        reporter.awaitTermination(5, TimeUnit.SECONDS);
+        long duration = System.currentTimeMillis() - startTime;
+
+        stopped = true;
+        if (!loopsDone.await(30, TimeUnit.SECONDS)) {
+            log.warn("{} calls still in flight after stopped", loopsDone.getCount());
+        }
+        stats.printSummary(System.out, duration);
+
+        for (RelayerClient client : clients) {
+            client.shutdown();
+        }
+    }
+
+    private static LoadCase[] buildWeightedCases(String mix) {
+        List<LoadCase> cases = new ArrayList<>();
+        for (String item : StrUtil.split(mix, ',', true, true)) {
+            List<String> pair = StrUtil.split(item, '=', true, true);
+            LoadCase loadCase = LoadCase.parse(pair.get(0));
+            int weight = pair.size() > 1 ? Integer.parseInt(pair.get(1)) : 1;
+            for (int i = 0; i < weight; i++) {
+                cases.add(loadCase);
+            }
+        }
+        if (cases.isEmpty()) {
+            throw new IllegalArgumentException("empty load mix");
+        }
+        return cases.toArray(new LoadCase[0]);
+    }
+
+    /**
+     * One call in flight, sending the next one on the response of the last one.
+     */
+    private class CallLoop implements StreamObserver<Response> {
+
+        private final RelayerClient client;
+
+        private LoadCase currentCase;
+
+        private String currentDomain;
+
+        private long sendTime;
+
+        private boolean success;
+
+        CallLoop(RelayerClient client) {
+            this.client = client;
+        }
+
+        void next() {
+            if (stopped) {
+                loopsDone.countDown();
+                return;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            currentCase = weightedCases[random.nextInt(weightedCases.length)];
+            currentDomain = domains.get(random.nextInt(domains.size()));
+            success = false;
+            sendTime = System.nanoTime();
+            try {
+                if (currentCase == LoadCase.HEARTBEAT) {
+                    client.heartbeat(this);
+                } else {
+                    CallBBCRequest request = currentCase.buildBBCRequest(
+                            options.getProduct(),
+                            currentDomain,
+                            latestHeights.get(currentDomain).get(),
+                            rawMessage
+                    );
+                    client.bbcCall(request, this);
+                }
+            } catch (Throwable t) {
+                onError(t);
+            }
+        }
+
+        @Override
+        public void onNext(Response response) {
+            success = response.getCode() == 0;
+            if (!success) {
+                log.debug("{} failed: (code: {}, msg: {})", currentCase.getCaseName(), response.getCode(), response.getErrorMsg());
+                return;
+            }
+            if (currentCase == LoadCase.QUERY_LATEST_HEIGHT) {
+                long height = response.getBbcResp().getQueryLatestHeightResponse().getHeight();
+                latestHeights.get(currentDomain).accumulateAndGet(height, Math::max);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.debug("{} failed", currentCase.getCaseName(), t);
+            stats.record(currentCase, System.nanoTime() - sendTime, false);
+            next();
+        }
+
+        @Override
+        public void onCompleted() {
+            stats.record(currentCase, System.nanoTime() - sendTime, success);
+            next();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Throughput and latency histograms of every {@link LoadCase}.
+ *
+ * <p>
+ * Latencies are recorded in microseconds from many client threads. The reporter
+ * takes the interval histograms periodically and merges them into the totals.
+ * </p>
+ */
+public class LoadStats {
+
+    private static final String LINE_FORMAT = "%-32s %10s %8s %12s %10s %10s %10s %10s %10s%n";
+
+    private final Map<LoadCase, CaseStats> stats = new EnumMap<>(LoadCase.class);
+
+    private volatile boolean recording = false;
+
+    public LoadStats() {
+        for (LoadCase loadCase : LoadCase.values()) {
+            stats.put(loadCase, new CaseStats());
+        }
+    }
+
+    /**
+     * Calls finished before this are taken as warmup and not recorded.
+     */
+    public void startRecording() {
+        // drop everything recorded during warmup
+        stats.values().forEach(CaseStats::reset);
+        this.recording = true;
+    }
+
+    public void stopRecording() {
+        this.recording = false;
+    }
+
+    public void record(LoadCase loadCase, long latencyNanos, boolean success) {
+        if (!recording) {
+            return;
+        }
+        CaseStats caseStats = stats.get(loadCase);
+        if (success) {
+            caseStats.recorder.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        } else {
+            caseStats.errors.increment();
+        }
+    }
+
+    public void printInterval(PrintStream out, long intervalMillis) {
+        printHeader(out);
+        stats.forEach((loadCase, caseStats) -> {
+            Histogram interval = caseStats.takeInterval();
+            long errors = caseStats.errors.sumThenReset();
+            caseStats.totalErrors += errors;
+            printLine(out, loadCase.getCaseName(), interval, errors, intervalMillis);
+        });
+        out.println();
+    }
+
+    public void printSummary(PrintStream out, long durationMillis) {
+        stats.values().forEach(caseStats -> {
+            caseStats.takeInterval();
+            caseStats.totalErrors += caseStats.errors.sumThenReset();
+        });
+
+        out.println("==================== summary ====================");
+        printHeader(out);
+        Histogram all = new Histogram(3);
+        long allErrors = 0;
+        for (Map.Entry<LoadCase, CaseStats> entry : stats.entrySet()) {
+            CaseStats caseStats = entry.getValue();
+            printLine(out, entry.getKey().getCaseName(), caseStats.total, caseStats.totalErrors, durationMillis);
+            all.add(caseStats.total);
+            allErrors += caseStats.totalErrors;
+        }
+        printLine(out, "all", all, allErrors, durationMillis);
+        out.println();
+    }
+
+    private void printHeader(PrintStream out) {
+        out.printf(LINE_FORMAT, "case", "count", "errors", "ops/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+    }
+
+    private void printLine(PrintStream out, String name, Histogram histogram, long errors, long millis) {
+        long count = histogram.getTotalCount();
+        if (count == 0 && errors == 0) {
+            return;
+        }
+        out.printf(
+                LINE_FORMAT,
+                name,
+                count,
+                errors,
+                String.format("%.1f", millis <= 0 ? 0 : count * 1000.0 / millis),
+                toMillis(histogram.getValueAtPercentile(50)),
+                toMillis(histogram.getValueAtPercentile(90)),
+                toMillis(histogram.getValueAtPercentile(99)),
+                toMillis(histogram.getValueAtPercentile(99.9)),
+                toMillis(histogram.getMaxValue())
+        );
+    }
+
+    private static String toMillis(long micros) {
+        return String.format("%.3f", micros / 1000.0);
+    }
+
+    private static class CaseStats {
+
+        private final Recorder recorder = new Recorder(3);
+
+        private final LongAdder errors = new LongAdder();
+
+        private final Histogram total = new Histogram(3);
+
+        private Histogram intervalToRecycle;
+
+        private long totalErrors;
+
+        private synchronized Histogram takeInterval() {
+            Histogram interval = recorder.getIntervalHistogram(intervalToRecycle);
+            total.add(interval);
+            intervalToRecycle = interval;
+            return interval;
+        }
+
+        private synchronized void reset() {
+            recorder.reset();
+            errors.reset();
+            total.reset();
+            totalErrors = 0;
+        }
+    }
+}
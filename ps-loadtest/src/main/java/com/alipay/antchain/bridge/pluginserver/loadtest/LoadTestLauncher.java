@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import cn.hutool.core.util.StrUtil;
+import org.apache.commons.cli.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+public class LoadTestLauncher {
+
+    private static final String OP_HELP = "h";
+    private static final String OP_HOST = "H";
+    private static final String OP_PORT = "p";
+    private static final String OP_EMBEDDED = "e";
+    private static final String OP_PLUGIN_REPO = "plugin-repo";
+    private static final String OP_CERTS = "certs";
+    private static final String OP_AUTHORITY = "authority";
+    private static final String OP_PLAINTEXT = "plaintext";
+    private static final String OP_CLIENTS = "c";
+    private static final String OP_CONCURRENCY = "n";
+    private static final String OP_DOMAINS = "domains";
+    private static final String OP_PRODUCT = "product";
+    private static final String OP_MIX = "mix";
+    private static final String OP_WARMUP = "w";
+    private static final String OP_DURATION = "d";
+    private static final String OP_INTERVAL = "i";
+    private static final String OP_CHAIN_CONF = "chain-conf";
+    private static final String OP_LATENCY = "latency";
+    private static final String OP_LATENCY_JITTER = "latency-jitter";
+    private static final String OP_BLOCK_INTERVAL = "block-interval";
+    private static final String OP_MESSAGES_PER_HEIGHT = "messages-per-height";
+    private static final String OP_MESSAGE_SIZE = "message-size";
+
+    private static final Options options;
+
+    static {
+        options = new Options();
+        options.addOption(OP_HELP, "help", false, "print help info");
+        options.addOption(OP_HOST, "host", true, "plugin server host, 127.0.0.1 by default");
+        options.addOption(OP_PORT, "port", true, "plugin server port, 9090 by default");
+        options.addOption(OP_EMBEDDED, "embedded", false, "start the plugin server in this process on localhost");
+        options.addOption(null, OP_PLUGIN_REPO, true, "plugin repo of the embedded plugin server, ./plugins by default");
+        options.addOption(null, OP_CERTS, true, "directory with server.crt, server.key and trust.crt, ./certs by default");
+        options.addOption(null, OP_AUTHORITY, true, "authority checked against the server certificate, pluginserver by default");
+        options.addOption(null, OP_PLAINTEXT, false, "connect without tls");
+        options.addOption(OP_CLIENTS, "clients", true, "number of relayer clients, 16 by default");
+        options.addOption(OP_CONCURRENCY, "concurrency", true, "calls in flight of every client, 8 by default");
+        options.addOption(null, OP_DOMAINS, true, "number of domains to start up, 4 by default");
+        options.addOption(null, OP_PRODUCT, true, "product of the plugin, mockchain by default");
+        options.addOption(null, OP_MIX, true, "weights of the request cases, like heartbeat=1,queryLatestHeight=2");
+        options.addOption(OP_WARMUP, "warmup", true, "seconds to warm up, 10 by default");
+        options.addOption(OP_DURATION, "duration", true, "seconds to record, 60 by default");
+        options.addOption(OP_INTERVAL, "interval", true, "seconds between reports, 10 by default");
+        options.addOption(null, OP_CHAIN_CONF, true, "file of the raw config to start up the bbc services, overrides the mock chain options");
+        options.addOption(null, OP_LATENCY, true, "mock chain: milliseconds of every chain access");
+        options.addOption(null, OP_LATENCY_JITTER, true, "mock chain: max random milliseconds added to the latency");
+        options.addOption(null, OP_BLOCK_INTERVAL, true, "mock chain: milliseconds between blocks");
+        options.addOption(null, OP_MESSAGES_PER_HEIGHT, true, "mock chain: cross-chain messages on every height");
+        options.addOption(null, OP_MESSAGE_SIZE, true, "size of every cross-chain message, 1024 by default");
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmd = parser.parse(options, args);
+
+        if (cmd.hasOption(OP_HELP)) {
+            HelpFormatter helpFormatter = new HelpFormatter();
+            helpFormatter.printHelp("plugin server load test", options);
+            return;
+        }
+
+        LoadTestOptions loadTestOptions = parseOptions(cmd);
+
+        ConfigurableApplicationContext server = null;
+        if (cmd.hasOption(OP_EMBEDDED)) {
+            server = EmbeddedPluginServer.start(
+                    loadTestOptions.getPort(),
+                    loadTestOptions.getPort() + 1,
+                    cmd.getOptionValue(OP_PLUGIN_REPO, "plugins"),
+                    loadTestOptions.getCertsDir()
+            );
+            loadTestOptions.setHost("127.0.0.1");
+        }
+
+        try {
+            new LoadGenerator(loadTestOptions).run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    private static LoadTestOptions parseOptions(CommandLine cmd) throws Exception {
+        LoadTestOptions loadTestOptions = new LoadTestOptions();
+        if (cmd.hasOption(OP_HOST)) {
+            loadTestOptions.setHost(cmd.getOptionValue(OP_HOST));
+        }
+        if (cmd.hasOption(OP_PORT)) {
+            loadTestOptions.setPort(Integer.parseInt(cmd.getOptionValue(OP_PORT)));
+        }
+        if (cmd.hasOption(OP_CERTS)) {
+            loadTestOptions.setCertsDir(cmd.getOptionValue(OP_CERTS));
+        }
+        if (cmd.hasOption(OP_AUTHORITY)) {
+            loadTestOptions.setAuthority(cmd.getOptionValue(OP_AUTHORITY));
+        }
+        loadTestOptions.setPlaintext(cmd.hasOption(OP_PLAINTEXT));
+        if (cmd.hasOption(OP_CLIENTS)) {
+            loadTestOptions.setClientNum(Integer.parseInt(cmd.getOptionValue(OP_CLIENTS)));
+        }
+        if (cmd.hasOption(OP_CONCURRENCY)) {
+            loadTestOptions.setConcurrency(Integer.parseInt(cmd.getOptionValue(OP_CONCURRENCY)));
+        }
+        if (cmd.hasOption(OP_DOMAINS)) {
+            loadTestOptions.setDomainNum(Integer.parseInt(cmd.getOptionValue(OP_DOMAINS)));
+        }
+        if (cmd.hasOption(OP_PRODUCT)) {
+            loadTestOptions.setProduct(cmd.getOptionValue(OP_PRODUCT));
+        }
+        if (cmd.hasOption(OP_MIX)) {
+            loadTestOptions.setMix(cmd.getOptionValue(OP_MIX));
+        }
+        if (cmd.hasOption(OP_WARMUP)) {
+            loadTestOptions.setWarmupSeconds(Long.parseLong(cmd.getOptionValue(OP_WARMUP)));
+        }
+        if (cmd.hasOption(OP_DURATION)) {
+            loadTestOptions.setDurationSeconds(Long.parseLong(cmd.getOptionValue(OP_DURATION)));
+        }
+        if (cmd.hasOption(OP_INTERVAL)) {
+            loadTestOptions.setReportIntervalSeconds(Long.parseLong(cmd.getOptionValue(OP_INTERVAL)));
+        }
+        if (cmd.hasOption(OP_MESSAGE_SIZE)) {
+            loadTestOptions.setMessageSize(Integer.parseInt(cmd.getOptionValue(OP_MESSAGE_SIZE)));
+        }
+
+        if (cmd.hasOption(OP_CHAIN_CONF)) {
+            loadTestOptions.setChainConf(Files.readAllBytes(Paths.get(cmd.getOptionValue(OP_CHAIN_CONF))));
+        } else {
+            // settings of the mock chain, see MockChainConfig in ps-mock-plugin
+            StringBuilder conf = new StringBuilder();
+            appendConf(conf, cmd, OP_LATENCY, "latencyMs");
+            appendConf(conf, cmd, OP_LATENCY_JITTER, "latencyJitterMs");
+            appendConf(conf, cmd, OP_BLOCK_INTERVAL, "blockIntervalMs");
+            appendConf(conf, cmd, OP_MESSAGES_PER_HEIGHT, "messagesPerHeight");
+            appendConf(conf, cmd, OP_MESSAGE_SIZE, "messageSize");
+            loadTestOptions.setChainConf(conf.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return loadTestOptions;
+    }
+
+    private static void appendConf(StringBuilder conf, CommandLine cmd, String option, String key) {
+        if (cmd.hasOption(option)) {
+            conf.append(StrUtil.format("{}={}\n", key, cmd.getOptionValue(option)));
+        }
+    }
+}
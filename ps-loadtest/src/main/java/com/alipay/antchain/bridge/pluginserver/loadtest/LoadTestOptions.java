@@ -0,0 +1,61 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class LoadTestOptions {
+
+    private String host = "127.0.0.1";
+
+    private int port = 9090;
+
+    private String certsDir = "certs";
+
+    private String authority = "pluginserver";
+
+    private boolean plaintext = false;
+
+    private int clientNum = 16;
+
+    private int concurrency = 8;
+
+    private int domainNum = 4;
+
+    private String product = "mockchain";
+
+    private String mix = "heartbeat=1,queryLatestHeight=2,readCrossChainMessagesByHeight=4,relayAuthMessage=2,readCrossChainMessageReceipt=1";
+
+    /**
+     * Size of the auth messages relayed.
+     */
+    private int messageSize = 1024;
+
+    /**
+     * Raw config to start up the bbc services with.
+     */
+    private byte[] chainConf = new byte[0];
+
+    private long warmupSeconds = 10;
+
+    private long durationSeconds = 60;
+
+    private long reportIntervalSeconds = 10;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.loadtest;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.commons.bbc.DefaultBBCContext;
+import com.alipay.antchain.bridge.pluginserver.service.*;
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
+import io.grpc.netty.shaded.io.grpc.netty.NegotiationType;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import lombok.SneakyThrows;
+
+/**
+ * One relayer connected to the plugin server, owning its own channel.
+ *
+ * <p>
+ * For mutual TLS, the client uses {@code server.crt} and {@code server.key} under
+ * the certs directory as its own identity, which is trusted by the plugin server
+ * with the {@code trust.crt} generated by {@code init_tls_certs.sh}.
+ * </p>
+ */
+public class RelayerClient {
+
+    private final ManagedChannel channel;
+
+    private final CrossChainServiceGrpc.CrossChainServiceStub asyncStub;
+
+    private final CrossChainServiceGrpc.CrossChainServiceBlockingStub blockingStub;
+
+    @SneakyThrows
+    public RelayerClient(String host, int port, String certsDir, String authority, boolean plaintext) {
+        NettyChannelBuilder builder = NettyChannelBuilder.forAddress(host, port);
+        if (plaintext) {
+            builder.negotiationType(NegotiationType.PLAINTEXT);
+        } else {
+            builder.negotiationType(NegotiationType.TLS)
+                    .sslContext(
+                            GrpcSslContexts.forClient()
+                                    .trustManager(new File(certsDir, "trust.crt"))
+                                    .keyManager(new File(certsDir, "server.crt"), new File(certsDir, "server.key"))
+                                    .build()
+                    );
+            if (StrUtil.isNotEmpty(authority)) {
+                builder.overrideAuthority(authority);
+            }
+        }
+        this.channel = builder.build();
+        this.asyncStub = CrossChainServiceGrpc.newStub(channel);
+        this.blockingStub = CrossChainServiceGrpc.newBlockingStub(channel);
+    }
+
+    /**
+     * Start up the bbc service of the domain with the raw config of the chain client.
+     */
+    public void startUp(String product, String domain, byte[] confForBlockchainClient) {
+        DefaultBBCContext context = new DefaultBBCContext();
+        context.setConfForBlockchainClient(confForBlockchainClient);
+        checkResponse(
+                blockingStub.bbcCall(
+                        CallBBCRequest.newBuilder()
+                                .setProduct(product)
+                                .setDomain(domain)
+                                .setStartUpReq(
+                                        StartUpRequest.newBuilder()
+                                                .setRawContext(ByteString.copyFrom(context.encodeToBytes()))
+                                ).build()
+                ),
+                "startup " + domain
+        );
+    }
+
+    public long queryLatestHeight(String product, String domain) {
+        Response response = blockingStub.bbcCall(
+                LoadCase.QUERY_LATEST_HEIGHT.buildBBCRequest(product, domain, 0, ByteString.EMPTY)
+        );
+        checkResponse(response, "query latest height of " + domain);
+        return response.getBbcResp().getQueryLatestHeightResponse().getHeight();
+    }
+
+    public void heartbeat(StreamObserver<Response> responseObserver) {
+        asyncStub.heartbeat(Empty.getDefaultInstance(), responseObserver);
+    }
+
+    public void bbcCall(CallBBCRequest request, StreamObserver<Response> responseObserver) {
+        asyncStub.bbcCall(request, responseObserver);
+    }
+
+    public void shutdown() throws InterruptedException {
+        channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private static void checkResponse(Response response, String action) {
+        if (response.getCode() != 0) {
+            throw new IllegalStateException(
+                    StrUtil.format("failed to {}: (code: {}, msg: {})", action, response.getCode(), response.getErrorMsg())
+            );
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.mockplugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alipay.antchain.bridge.commons.bbc.AbstractBBCContext;
+import com.alipay.antchain.bridge.commons.bbc.syscontract.AuthMessageContract;
+import com.alipay.antchain.bridge.commons.bbc.syscontract.ContractStatusEnum;
+import com.alipay.antchain.bridge.commons.bbc.syscontract.SDPContract;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessage;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessageReceipt;
+import com.alipay.antchain.bridge.plugins.lib.BBCService;
+import com.alipay.antchain.bridge.plugins.spi.bbc.AbstractBBCService;
+
+/**
+ * BBC service of a chain that only lives in memory, used to load the
+ * plugin server without a live blockchain.
+ *
+ * <p>
+ * Every chain access sleeps for the configured latency, the latest height
+ * grows with time and every height carries the configured number of
+ * cross-chain messages. See {@link MockChainConfig} for the settings.
+ * </p>
+ */
+@BBCService(products = MockBBCService.PRODUCT, pluginId = "plugin-mockchain")
+public class MockBBCService extends AbstractBBCService {
+
+    public static final String PRODUCT = "mockchain";
+
+    private static final String AM_CONTRACT_ADDRESS = "mock-am-contract";
+
+    private static final String SDP_CONTRACT_ADDRESS = "mock-sdp-contract";
+
+    private final AtomicLong txCounter = new AtomicLong(0);
+
+    private volatile AbstractBBCContext context;
+
+    private volatile MockChainConfig config = new MockChainConfig();
+
+    private volatile long genesisTime;
+
+    private byte[] payload = new byte[0];
+
+    @Override
+    public void startup(AbstractBBCContext context) {
+        this.context = context;
+        this.config = MockChainConfig.parse(context.getConfForBlockchainClient());
+        this.genesisTime = System.currentTimeMillis();
+        this.payload = new byte[config.getMessageSize()];
+        ThreadLocalRandom.current().nextBytes(payload);
+        if (getBBCLogger() != null) {
+            getBBCLogger().info("mock chain started with config: {}", config);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public AbstractBBCContext getContext() {
+        return context;
+    }
+
+    @Override
+    public CrossChainMessageReceipt readCrossChainMessageReceipt(String txHash) {
+        simulateLatency();
+        return buildReceipt(txHash);
+    }
+
+    @Override
+    public List<CrossChainMessage> readCrossChainMessagesByHeight(long height) {
+        simulateLatency();
+        if (height > currentHeight()) {
+            return Collections.emptyList();
+        }
+
+        long timestamp = genesisTime + height * config.getBlockIntervalMs();
+        byte[] blockHash = toBytes32(height);
+        List<CrossChainMessage> messages = new ArrayList<>(config.getMessagesPerHeight());
+        for (int i = 0; i < config.getMessagesPerHeight(); i++) {
+            messages.add(
+                    CrossChainMessage.createCrossChainMessage(
+                            CrossChainMessage.CrossChainMessageType.AUTH_MSG,
+                            height,
+                            timestamp,
+                            blockHash,
+                            payload,
+                            payload,
+                            payload,
+                            toBytes32(height * config.getMessagesPerHeight() + i)
+                    )
+            );
+        }
+        return messages;
+    }
+
+    @Override
+    public long querySDPMessageSeq(String senderDomain, String fromAddress, String receiverDomain, String toAddress) {
+        simulateLatency();
+        return 0;
+    }
+
+    @Override
+    public void setupAuthMessageContract() {
+        simulateLatency();
+        context.setAuthMessageContract(new AuthMessageContract(AM_CONTRACT_ADDRESS, ContractStatusEnum.CONTRACT_DEPLOYED));
+    }
+
+    @Override
+    public void setupSDPMessageContract() {
+        simulateLatency();
+        context.setSdpContract(new SDPContract(SDP_CONTRACT_ADDRESS, ContractStatusEnum.CONTRACT_DEPLOYED));
+    }
+
+    @Override
+    public void setProtocol(String protocolAddress, String protocolType) {
+        simulateLatency();
+    }
+
+    @Override
+    public CrossChainMessageReceipt relayAuthMessage(byte[] rawMessage) {
+        simulateLatency();
+        return buildReceipt(String.format("%064x", txCounter.incrementAndGet()));
+    }
+
+    @Override
+    public void setAmContract(String contractAddress) {
+        simulateLatency();
+    }
+
+    @Override
+    public Long queryLatestHeight() {
+        simulateLatency();
+        return currentHeight();
+    }
+
+    @Override
+    public void setLocalDomain(String domain) {
+        simulateLatency();
+    }
+
+    private long currentHeight() {
+        return (System.currentTimeMillis() - genesisTime) / config.getBlockIntervalMs();
+    }
+
+    private CrossChainMessageReceipt buildReceipt(String txHash) {
+        CrossChainMessageReceipt receipt = new CrossChainMessageReceipt();
+        receipt.setTxhash(txHash);
+        receipt.setConfirmed(true);
+        receipt.setSuccessful(true);
+        receipt.setErrorMsg("");
+        return receipt;
+    }
+
+    private void simulateLatency() {
+        long latency = config.getLatencyMs();
+        if (config.getLatencyJitterMs() > 0) {
+            latency += ThreadLocalRandom.current().nextLong(config.getLatencyJitterMs() + 1);
+        }
+        if (latency <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] toBytes32(long value) {
+        byte[] result = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            result[31 - i] = (byte) (value >>> (8 * i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.mockplugin;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Behavior of the mock chain, read from {@code confForBlockchainClient}
+ * of the startup context in {@code key=value} lines, for example:
+ *
+ * <pre>
+ * latencyMs=20
+ * latencyJitterMs=10
+ * blockIntervalMs=1000
+ * messagesPerHeight=16
+ * messageSize=1024
+ * </pre>
+ *
+ * <p>Missing keys keep the default values.</p>
+ */
+public class MockChainConfig {
+
+    /**
+     * Time spent on every chain access, like a rpc to the chain node.
+     */
+    private long latencyMs = 0;
+
+    /**
+     * Random extra time added to {@link #latencyMs}.
+     */
+    private long latencyJitterMs = 0;
+
+    /**
+     * The latest height grows one every interval since the bbc service started.
+     */
+    private long blockIntervalMs = 1000;
+
+    /**
+     * How many cross-chain messages on every height.
+     */
+    private int messagesPerHeight = 1;
+
+    /**
+     * Size of the message and proof of every cross-chain message.
+     */
+    private int messageSize = 1024;
+
+    public static MockChainConfig parse(byte[] rawConf) {
+        MockChainConfig config = new MockChainConfig();
+        if (rawConf == null || rawConf.length == 0) {
+            return config;
+        }
+
+        Properties properties = new Properties();
+        try {
+            properties.load(new StringReader(new String(rawConf, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("illegal mock chain config", e);
+        }
+        config.latencyMs = Long.parseLong(properties.getProperty("latencyMs", String.valueOf(config.latencyMs)));
+        config.latencyJitterMs = Long.parseLong(properties.getProperty("latencyJitterMs", String.valueOf(config.latencyJitterMs)));
+        config.blockIntervalMs = Long.parseLong(properties.getProperty("blockIntervalMs", String.valueOf(config.blockIntervalMs)));
+        config.messagesPerHeight = Integer.parseInt(properties.getProperty("messagesPerHeight", String.valueOf(config.messagesPerHeight)));
+        config.messageSize = Integer.parseInt(properties.getProperty("messageSize", String.valueOf(config.messageSize)));
+        if (config.blockIntervalMs <= 0) {
+            throw new IllegalArgumentException("blockIntervalMs must be positive");
+        }
+        return config;
+    }
+
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    public long getLatencyJitterMs() {
+        return latencyJitterMs;
+    }
+
+    public long getBlockIntervalMs() {
+        return blockIntervalMs;
+    }
+
+    public int getMessagesPerHeight() {
+        return messagesPerHeight;
+    }
+
+    public int getMessageSize() {
+        return messageSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "latencyMs=%d, latencyJitterMs=%d, blockIntervalMs=%d, messagesPerHeight=%d, messageSize=%d",
+                latencyMs, latencyJitterMs, blockIntervalMs, messagesPerHeight, messageSize
+        );
+    }
+}
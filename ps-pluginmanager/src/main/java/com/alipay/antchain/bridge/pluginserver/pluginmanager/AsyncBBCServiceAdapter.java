@@ -0,0 +1,80 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessage;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessageReceipt;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+
+/**
+ * Run the blocking methods of a bbc service on the executor as {@link IAsyncBBCService}.
+ */
+public class AsyncBBCServiceAdapter implements IAsyncBBCService {
+
+    /**
+     * @param executor runs the blocking calls, may run them on the caller thread
+     *                 if the caller is a worker already
+     * @return the service itself if it is asynchronous, or the adapter of it
+     */
+    public static IAsyncBBCService of(IBBCService bbcService, Executor executor) {
+        if (bbcService instanceof IAsyncBBCService) {
+            return (IAsyncBBCService) bbcService;
+        }
+        return new AsyncBBCServiceAdapter(bbcService, executor);
+    }
+
+    private final IBBCService bbcService;
+
+    private final Executor executor;
+
+    public AsyncBBCServiceAdapter(IBBCService bbcService, Executor executor) {
+        this.bbcService = bbcService;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<CrossChainMessageReceipt> relayAuthMessageAsync(byte[] rawMessage) {
+        return CompletableFuture.supplyAsync(() -> bbcService.relayAuthMessage(rawMessage), executor);
+    }
+
+    @Override
+    public CompletableFuture<CrossChainMessageReceipt> readCrossChainMessageReceiptAsync(String txHash) {
+        return CompletableFuture.supplyAsync(() -> bbcService.readCrossChainMessageReceipt(txHash), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<CrossChainMessage>> readCrossChainMessagesByHeightAsync(long height) {
+        return CompletableFuture.supplyAsync(() -> bbcService.readCrossChainMessagesByHeight(height), executor);
+    }
+
+    @Override
+    public CompletableFuture<Long> querySDPMessageSeqAsync(String senderDomain, String fromAddress, String receiverDomain, String toAddress) {
+        return CompletableFuture.supplyAsync(
+                () -> bbcService.querySDPMessageSeq(senderDomain, fromAddress, receiverDomain, toAddress),
+                executor
+        );
+    }
+
+    @Override
+    public CompletableFuture<Long> queryLatestHeightAsync() {
+        return CompletableFuture.supplyAsync(bbcService::queryLatestHeight, executor);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+
+/**
+ * Registry of the loggers of bbc services, indexed by product and domain.
+ *
+ * <p>
+ * A logger is created at most once for a domain even if the domain starts up
+ * concurrently, and it must be closed when the domain shuts down, which stops
+ * its appenders and releases the log file.
+ * </p>
+ */
+@Slf4j
+public class BBCLoggerRegistry {
+
+    private final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+
+    private final BiFunction<String, String, Logger> loggerFactory;
+
+    /**
+     * @param loggerFactory create the logger with appenders for product and domain,
+     *                      may return null if no logger needed
+     */
+    public BBCLoggerRegistry(BiFunction<String, String, Logger> loggerFactory) {
+        this.loggerFactory = loggerFactory;
+    }
+
+    /**
+     * @return the logger of the domain, created if not yet
+     */
+    public Logger getOrCreate(String product, String domain) {
+        return loggers.computeIfAbsent(getLoggerName(product, domain), k -> loggerFactory.apply(product, domain));
+    }
+
+    /**
+     * Detach and stop the appenders of the domain, a new logger would be
+     * created if the domain starts up again.
+     */
+    public void close(String product, String domain) {
+        closeLogger(loggers.remove(getLoggerName(product, domain)));
+    }
+
+    /**
+     * Close the loggers of all domains of the product.
+     */
+    public void closeProduct(String product) {
+        String prefix = getLoggerName(product, "");
+        loggers.keySet().stream()
+                .filter(name -> StrUtil.startWith(name, prefix))
+                .forEach(name -> closeLogger(loggers.remove(name)));
+    }
+
+    public void closeAll() {
+        loggers.keySet().forEach(name -> closeLogger(loggers.remove(name)));
+    }
+
+    public static String getLoggerName(String product, String domain) {
+        return StrUtil.format("{}::{}", product, domain);
+    }
+
+    private void closeLogger(Logger logger) {
+        if (logger instanceof ch.qos.logback.classic.Logger) {
+            // stopping the async appender flushes its queue and stops the file appender
+            ((ch.qos.logback.classic.Logger) logger).detachAndStopAllAppenders();
+            log.info("bbc logger {} closed", logger.getName());
+        } else if (ObjectUtil.isNotNull(logger)) {
+            log.debug("bbc logger {} dropped", logger.getName());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+
+/**
+ * Cache of the live bbc services, indexed by product and then domain.
+ *
+ * <p>
+ * Lookup is lock-free and allocates nothing, the entries must be
+ * invalidated when the service or its plugin is gone.
+ * </p>
+ */
+public class BBCServiceCache {
+
+    private final Map<String, Map<String, IBBCService>> services = new ConcurrentHashMap<>();
+
+    public IBBCService get(String product, String domain) {
+        Map<String, IBBCService> domainServices = services.get(product);
+        return domainServices == null ? null : domainServices.get(domain);
+    }
+
+    public void put(String product, String domain, IBBCService bbcService) {
+        services.computeIfAbsent(product, p -> new ConcurrentHashMap<>()).put(domain, bbcService);
+    }
+
+    public void invalidate(String product, String domain) {
+        Map<String, IBBCService> domainServices = services.get(product);
+        if (domainServices != null) {
+            domainServices.remove(domain);
+        }
+    }
+
+    public void invalidateDomain(String domain) {
+        services.values().forEach(domainServices -> domainServices.remove(domain));
+    }
+
+    public void invalidateProduct(String product) {
+        services.remove(product);
+    }
+
+    public void clear() {
+        services.clear();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+
+import cn.hutool.core.collection.ListUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.ObjectUtil;
+import com.alipay.antchain.bridge.plugins.manager.core.IAntChainBridgePluginManager;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load and start the plugin jars of the repo in background on a bounded pool.
+ *
+ * <p>
+ * Every jar is verified on its own worker, reading all the entries to check the CRC
+ * and signatures, which is most of the time spent on a jar and runs in parallel.
+ * Only the load and start of the verified jar hold the lock of the manager, the
+ * same lock taken by the reads of {@link PluginManagerWrapperImpl}, since the plugin
+ * states of pf4j are not thread-safe. The plugins ready are served while the others
+ * still loading. Broken jars are skipped.
+ * </p>
+ */
+@Slf4j
+public class BackgroundPluginLoader {
+
+    private final IAntChainBridgePluginManager manager;
+
+    private final Path pluginRepo;
+
+    private final int poolSize;
+
+    private final Runnable onPluginReady;
+
+    private final CountDownLatch firstReady = new CountDownLatch(1);
+
+    private final AtomicInteger readyCount = new AtomicInteger(0);
+
+    /**
+     * @param onPluginReady called after every plugin started, e.g. to wake up the ones waiting for it
+     */
+    public BackgroundPluginLoader(IAntChainBridgePluginManager manager, Path pluginRepo, int poolSize, Runnable onPluginReady) {
+        this.manager = manager;
+        this.pluginRepo = pluginRepo;
+        this.poolSize = Math.max(1, poolSize);
+        this.onPluginReady = onPluginReady;
+    }
+
+    /**
+     * Start loading the jars in background.
+     *
+     * @return future completed when all jars loaded or skipped
+     */
+    public CompletableFuture<Void> start() {
+        List<Path> jars = listJars(pluginRepo);
+        if (jars.isEmpty()) {
+            log.info("no plugin jar found in {}", pluginRepo);
+            firstReady.countDown();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long startTime = System.currentTimeMillis();
+        int threads = Math.min(poolSize, jars.size());
+        ExecutorService loaders = Executors.newFixedThreadPool(
+                threads,
+                ThreadFactoryBuilder.create().setNamePrefix("plugin-loader-").setDaemon(true).build()
+        );
+        log.info("loading {} plugin jars in background with {} threads", jars.size(), threads);
+        return CompletableFuture.allOf(
+                jars.stream()
+                        .map(jar -> CompletableFuture.runAsync(() -> loadAndStart(jar), loaders))
+                        .toArray(CompletableFuture[]::new)
+        ).whenComplete((v, t) -> {
+            loaders.shutdown();
+            firstReady.countDown();
+            log.info("{} of {} plugins ready in {} ms", readyCount.get(), jars.size(), System.currentTimeMillis() - startTime);
+        });
+    }
+
+    /**
+     * Wait until the first plugin ready, or all jars done if none of them ready.
+     *
+     * @return false if timeout
+     */
+    public boolean awaitFirstReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return firstReady.await(timeout, unit);
+    }
+
+    /**
+     * @return number of plugins loaded and started so far
+     */
+    public int getReadyCount() {
+        return readyCount.get();
+    }
+
+    /**
+     * @return the jar files right in the repo, sorted by name
+     */
+    static List<Path> listJars(Path pluginRepo) {
+        File[] files = FileUtil.isDirectory(pluginRepo.toFile()) ? pluginRepo.toFile().listFiles() : null;
+        if (ObjectUtil.isNull(files)) {
+            return ListUtil.empty();
+        }
+        return Arrays.stream(files)
+                .filter(file -> file.isFile() && FileUtil.extName(file).equalsIgnoreCase("jar"))
+                .map(File::toPath)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private void loadAndStart(Path jar) {
+        try {
+            long startTime = System.currentTimeMillis();
+            verify(jar);
+            long verifiedTime = System.currentTimeMillis();
+            synchronized (manager) {
+                manager.loadPlugin(jar);
+                manager.startPlugin(jar);
+            }
+            long startedTime = System.currentTimeMillis();
+            readyCount.incrementAndGet();
+            firstReady.countDown();
+            log.info("plugin {} ready in {} ms [verify: {} ms, load and start: {} ms]",
+                    jar.getFileName(), startedTime - startTime, verifiedTime - startTime, startedTime - verifiedTime);
+            onPluginReady.run();
+        } catch (Throwable t) {
+            log.error("failed to load plugin {}, skip it", jar, t);
+        }
+    }
+
+    /**
+     * Read all entries of the jar, which fails on broken entries or signatures.
+     */
+    private static void verify(Path jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar.toFile(), true)) {
+            byte[] buffer = new byte[8192];
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                try (InputStream in = jarFile.getInputStream(entry)) {
+                    while (in.read(buffer) != -1) {
+                        // only to check
+                    }
+                }
+            }
+        }
+    }
+}
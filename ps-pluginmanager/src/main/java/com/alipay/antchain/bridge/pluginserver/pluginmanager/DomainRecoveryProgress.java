@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Progress of the domains submitted to {@link DomainRecoveryScheduler} since it was idle last time.
+ */
+@Getter
+@AllArgsConstructor
+public class DomainRecoveryProgress {
+
+    private final int total;
+
+    private final int recovered;
+
+    private final int skipped;
+
+    private final int failed;
+
+    private final int running;
+
+    private final int queued;
+
+    private final long startTime;
+
+    /**
+     * Zero if not finished yet
+     */
+    private final long finishTime;
+
+    /**
+     * Error of the failed domains, key is {@code product::domain}
+     */
+    private final Map<String, String> failures;
+
+    public boolean isFinished() {
+        return running == 0 && queued == 0;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Restart the bbc services of many domains concurrently, e.g. on boot or after
+ * a plugin reloaded.
+ *
+ * <p>
+ * At most {@code parallelism} domains start at the same time, and the domains of
+ * one product start at most {@code rate-per-product} per second, so that the chain
+ * nodes are not flooded. Among the products not limited at the moment, the domain
+ * with the most recent traffic starts first.
+ * </p>
+ */
+@Slf4j
+@Component
+public class DomainRecoveryScheduler {
+
+    private static final Comparator<DomainRecoveryTask> PRIORITY =
+            Comparator.comparingLong(DomainRecoveryTask::getLastActiveTime).reversed();
+
+    @Value("${pluginserver.recovery.parallelism:8}")
+    private int parallelism;
+
+    @Value("${pluginserver.recovery.rate-per-product:10}")
+    private double ratePerProduct;
+
+    @Resource
+    private Environment environment;
+
+    // guarded by this
+    private final Map<String, ProductQueue> queues = new HashMap<>();
+
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    private int total;
+
+    private int recovered;
+
+    private int skipped;
+
+    private int failed;
+
+    private int running;
+
+    private long startTime;
+
+    private long finishTime;
+
+    private Semaphore permits;
+
+    private ExecutorService workers;
+
+    private Thread scheduler;
+
+    @PostConstruct
+    public void init() {
+        int size = Math.max(1, parallelism);
+        this.permits = new Semaphore(size);
+        this.workers = Executors.newFixedThreadPool(
+                size,
+                ThreadFactoryBuilder.create().setNamePrefix("domain-recovery-").setDaemon(true).build()
+        );
+        this.scheduler = new Thread(this::schedule, "domain-recovery-scheduler");
+        scheduler.setDaemon(true);
+        scheduler.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ObjectUtil.isNotNull(scheduler)) {
+            scheduler.interrupt();
+        }
+        if (ObjectUtil.isNotNull(workers)) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue the domains, the progress restarts counting if all domains submitted before are done.
+     */
+    public synchronized void submit(Collection<DomainRecoveryTask> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        if (isIdle()) {
+            total = recovered = skipped = failed = 0;
+            failures.clear();
+            startTime = System.currentTimeMillis();
+            finishTime = 0;
+        }
+        for (DomainRecoveryTask task : tasks) {
+            queues.computeIfAbsent(task.getProduct(), ProductQueue::new).tasks.add(task);
+        }
+        total += tasks.size();
+        log.info("{} domains queued for recovery with parallelism {}", tasks.size(), parallelism);
+        notifyAll();
+    }
+
+    public synchronized DomainRecoveryProgress getProgress() {
+        return new DomainRecoveryProgress(
+                total, recovered, skipped, failed, running,
+                total - recovered - skipped - failed - running,
+                startTime, finishTime, new HashMap<>(failures)
+        );
+    }
+
+    private void schedule() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                permits.acquire();
+                DomainRecoveryTask task = nextTask();
+                workers.execute(() -> recover(task));
+            }
+        } catch (InterruptedException e) {
+            log.debug("domain recovery scheduler stopped");
+        }
+    }
+
+    /**
+     * Wait for the task of the highest priority among the products not limited.
+     */
+    private synchronized DomainRecoveryTask nextTask() throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            ProductQueue next = null;
+            long waitTime = 0;
+            for (ProductQueue queue : queues.values()) {
+                if (queue.tasks.isEmpty()) {
+                    continue;
+                }
+                if (queue.nextStartTime > now) {
+                    waitTime = waitTime == 0 ? queue.nextStartTime - now : Math.min(waitTime, queue.nextStartTime - now);
+                    continue;
+                }
+                if (ObjectUtil.isNull(next) || PRIORITY.compare(queue.tasks.peek(), next.tasks.peek()) < 0) {
+                    next = queue;
+                }
+            }
+            if (ObjectUtil.isNotNull(next)) {
+                next.nextStartTime = now + getStartInterval(next.product);
+                running++;
+                return next.tasks.poll();
+            }
+            // zero to wait until new tasks submitted
+            wait(waitTime);
+        }
+    }
+
+    private void recover(DomainRecoveryTask task) {
+        boolean ok = false;
+        Throwable error = null;
+        try {
+            ok = ObjectUtil.defaultIfNull(task.getAction().call(), false);
+        } catch (Throwable t) {
+            error = t;
+            log.error("failed to recover domain [product: {}, domain: {}]", task.getProduct(), task.getDomain(), t);
+        }
+        synchronized (this) {
+            running--;
+            if (ObjectUtil.isNotNull(error)) {
+                failed++;
+                failures.put(StrUtil.format("{}::{}", task.getProduct(), task.getDomain()), error.toString());
+            } else if (ok) {
+                recovered++;
+            } else {
+                skipped++;
+            }
+            if (isIdle()) {
+                finishTime = System.currentTimeMillis();
+                log.info("domain recovery finished in {} ms [recovered: {}, skipped: {}, failed: {}]",
+                        finishTime - startTime, recovered, skipped, failed);
+            }
+        }
+        permits.release();
+    }
+
+    private boolean isIdle() {
+        return running == 0 && queues.values().stream().allMatch(queue -> queue.tasks.isEmpty());
+    }
+
+    /**
+     * @return milliseconds between two starts of the product, {@code pluginserver.plugin.<product>.recovery-rate}
+     * overrides the {@code rate-per-product}
+     */
+    private long getStartInterval(String product) {
+        Double rate = environment.getProperty(
+                StrUtil.format("pluginserver.plugin.{}.recovery-rate", product),
+                Double.class,
+                ratePerProduct
+        );
+        return rate <= 0 ? 0 : (long) (1000 / rate);
+    }
+
+    private static class ProductQueue {
+
+        private final String product;
+
+        private final PriorityQueue<DomainRecoveryTask> tasks = new PriorityQueue<>(PRIORITY);
+
+        private long nextStartTime;
+
+        ProductQueue(String product) {
+            this.product = product;
+        }
+    }
+}
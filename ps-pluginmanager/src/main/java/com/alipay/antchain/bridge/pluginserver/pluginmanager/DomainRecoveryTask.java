@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.concurrent.Callable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Restart of the bbc service of a domain, scheduled by {@link DomainRecoveryScheduler}.
+ */
+@Getter
+@AllArgsConstructor
+public class DomainRecoveryTask {
+
+    private final String product;
+
+    private final String domain;
+
+    /**
+     * Time of the last call for the domain, domains with more recent traffic start first
+     */
+    private final long lastActiveTime;
+
+    /**
+     * Start the service, returns false if the domain skipped, e.g. started already
+     */
+    private final Callable<Boolean> action;
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessage;
+import com.alipay.antchain.bridge.commons.core.base.CrossChainMessageReceipt;
+
+/**
+ * Asynchronous version of the chain accessing methods of {@code IBBCService}.
+ *
+ * <p>
+ * A plugin with non-blocking chain clients may implement it on its bbc service,
+ * then the plugin server threads are not held while the calls are outstanding.
+ * Other services are adapted by {@link AsyncBBCServiceAdapter}.
+ * </p>
+ */
+public interface IAsyncBBCService {
+
+    CompletableFuture<CrossChainMessageReceipt> relayAuthMessageAsync(byte[] rawMessage);
+
+    CompletableFuture<CrossChainMessageReceipt> readCrossChainMessageReceiptAsync(String txHash);
+
+    CompletableFuture<List<CrossChainMessage>> readCrossChainMessagesByHeightAsync(long height);
+
+    CompletableFuture<Long> querySDPMessageSeqAsync(String senderDomain, String fromAddress, String receiverDomain, String toAddress);
+
+    CompletableFuture<Long> queryLatestHeightAsync();
+}
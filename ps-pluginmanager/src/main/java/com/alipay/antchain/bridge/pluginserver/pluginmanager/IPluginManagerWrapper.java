@@ -20,6 +20,7 @@ import com.alipay.antchain.bridge.plugins.manager.core.IAntChainBridgePlugin;
 import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface IPluginManagerWrapper {
     void loadPlugins();
@@ -44,12 +45,58 @@ public interface IPluginManagerWrapper {
 
     List<String> allSupportProducts();
 
+    /**
+     * Check the product without the lock of plugins, against the products
+     * supported when the plugins last changed, e.g. to tag the metrics of calls.
+     */
+    boolean isSupportedProduct(String product);
+
+    /**
+     * @return false while the plugin jars still loading in background at boot,
+     * when the products supported are not all known yet
+     */
+    boolean isReady();
+
+    /**
+     * Wait for the plugin of the product, which may be still loading in background at boot.
+     *
+     * @return future completed with true once the plugin is ready, or with false if it
+     * is not found when all the plugin jars loaded
+     */
+    CompletableFuture<Boolean> awaitPlugin(String product);
+
     IBBCService createBBCService(String product, String domain);
 
     IBBCService getBBCService(String product, String domain);
 
+    /**
+     * Get the bbc service resolved before, without checking plugin and domain.
+     *
+     * @return null if not resolved or invalidated
+     */
+    IBBCService getCachedBBCService(String product, String domain);
+
+    void invalidateBBCService(String product, String domain);
+
+    /**
+     * Serve the calls of the domain with the given service again, e.g. the old service
+     * kept running when a new one created for the domain failed to start.
+     */
+    void restoreBBCService(String product, String domain, IBBCService bbcService);
+
+    /**
+     * Stop the log appenders of the bbc service once it shut down,
+     * they are opened again if the service is resolved again.
+     */
+    void closeBBCServiceLogger(String product, String domain);
+
     boolean hasDomain(String domain);
 
     List<String> allRunningDomains();
 
+    /**
+     * @return running domains whose services created by the product
+     */
+    List<String> allRunningDomains(String product);
+
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.pluginmanager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.plugins.manager.core.IAntChainBridgePluginManager;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index of the plugin jars not loaded yet, by the products they support.
+ *
+ * <p>
+ * Products of a jar are read from the {@code Plugin-Products} attribute of its manifest,
+ * comma separated, so that no class of the plugin loaded until a product of it is
+ * needed. A jar without the attribute can not be indexed and must be loaded at once.
+ * Plugin authors set it in the jar manifest, e.g. with {@code manifestEntries} of
+ * {@code maven-jar-plugin} as the mock plugin does.
+ * </p>
+ */
+@Slf4j
+public class LazyPluginIndex {
+
+    public static final String MANIFEST_PRODUCTS = "Plugin-Products";
+
+    private final Map<String, Path> pendingJars = new ConcurrentHashMap<>();
+
+    /**
+     * Index the jars of the repo.
+     *
+     * @return the jars not indexed, which should be loaded at once
+     */
+    public List<Path> index(Path pluginRepo) {
+        List<Path> unindexed = new ArrayList<>();
+        for (Path jar : BackgroundPluginLoader.listJars(pluginRepo)) {
+            List<String> products = readProducts(jar);
+            if (products.isEmpty()) {
+                unindexed.add(jar);
+                continue;
+            }
+            products.forEach(product -> pendingJars.put(product, jar));
+            log.info("plugin {} indexed for products {}, loaded on first use", jar.getFileName(), products);
+        }
+        return unindexed;
+    }
+
+    public boolean contains(String product) {
+        return pendingJars.containsKey(product);
+    }
+
+    public Set<String> products() {
+        return new HashSet<>(pendingJars.keySet());
+    }
+
+    /**
+     * Load and start the jar of the product if not yet, with the lock of the manager held
+     * by the caller or taken here, so the product is always found in the index or the manager.
+     *
+     * @throws RuntimeException if failed to load, the jar stays indexed and is retried on next use,
+     *                          or if failed to start, the jar is left to the manager
+     */
+    public void ensureLoaded(String product, IAntChainBridgePluginManager manager) {
+        if (!pendingJars.containsKey(product)) {
+            return;
+        }
+        synchronized (manager) {
+            Path jar = pendingJars.get(product);
+            if (ObjectUtil.isNull(jar)) {
+                return;
+            }
+            if (manager.hasPlugin(product)) {
+                pendingJars.values().removeIf(jar::equals);
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            manager.loadPlugin(jar);
+            try {
+                manager.startPlugin(jar);
+            } finally {
+                // the jar is in the manager once loaded, drop all products of it
+                pendingJars.values().removeIf(jar::equals);
+            }
+            log.info("plugin {} loaded for product {} in {} ms", jar.getFileName(), product, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Forget all jars, e.g. when all of them loaded.
+     */
+    public void clear() {
+        pendingJars.clear();
+    }
+
+    private List<String> readProducts(Path jar) {
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Manifest manifest = jarFile.getManifest();
+            String products = ObjectUtil.isNull(manifest) ? null : manifest.getMainAttributes().getValue(MANIFEST_PRODUCTS);
+            if (StrUtil.isBlank(products)) {
+                return Collections.emptyList();
+            }
+            return StrUtil.split(products, ',').stream()
+                    .map(StrUtil::trim)
+                    .filter(StrUtil::isNotEmpty)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.warn("failed to read manifest of plugin {}, load it at once", jar, e);
+            return Collections.emptyList();
+        }
+    }
+}
@@ -20,7 +20,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
 
 import ch.qos.logback.classic.AsyncAppender;
 import ch.qos.logback.classic.Level;
@@ -46,6 +50,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * The plugin states of pf4j are not thread-safe, so every access to the manager holds
+ * its lock, while the bbc services resolved are served lock-free from {@link BBCServiceCache}.
+ */
 @Slf4j
 @Component
 public class PluginManagerWrapperImpl implements IPluginManagerWrapper {
@@ -66,14 +74,29 @@ public class PluginManagerWrapperImpl implements IPluginManagerWrapper {
     @Value("${pluginserver.plugin.log.bbc.on:true}")
     private boolean isBBCLogOn;
 
-    private final Map<String, Logger> bbcLoggerMap = new HashMap<>();
+    private final BBCLoggerRegistry bbcLoggerRegistry = new BBCLoggerRegistry(this::createBBCServiceLogger);
+
+    private final BBCServiceCache bbcServiceCache = new BBCServiceCache();
+
+    private final LazyPluginIndex lazyPluginIndex = new LazyPluginIndex();
+
+    private final Map<String, String> domainProducts = new ConcurrentHashMap<>();
+
+    private volatile CompletableFuture<Void> bootLoading = CompletableFuture.completedFuture(null);
+
+    private final Map<String, CompletableFuture<Boolean>> pluginWaiters = new ConcurrentHashMap<>();
+
+    private volatile Set<String> supportedProducts = Collections.emptySet();
 
     @Autowired
     public PluginManagerWrapperImpl(
             @Value("${pluginserver.plugin.repo}") String path,
             @Value("${logging.file.path}") String appLogDir,
-            @Value("${pluginserver.plugin.policy.classloader.resource.ban-with-prefix.APPLICATION:}") String[] resourceBannedPrefixOnAppLevel
-    ) {
+            @Value("${pluginserver.plugin.policy.classloader.resource.ban-with-prefix.APPLICATION:}") String[] resourceBannedPrefixOnAppLevel,
+            @Value("${pluginserver.plugin.boot.background.enabled:false}") boolean backgroundBoot,
+            @Value("${pluginserver.plugin.boot.background.pool-size:4}") int backgroundPoolSize,
+            @Value("${pluginserver.plugin.boot.lazy.enabled:false}") boolean lazyBoot
+    ) throws InterruptedException {
         log.info("plugins path: {}", Paths.get(path).toAbsolutePath());
 
         this.bbcLoggerDir = Paths.get(appLogDir, "bbc").toAbsolutePath().toString();
@@ -83,8 +106,33 @@ public class PluginManagerWrapperImpl implements IPluginManagerWrapper {
                 path,
                 ObjectUtil.defaultIfNull(convertPathPrefixBannedMap(resourceBannedPrefixOnAppLevel), new HashMap<>())
         );
-        loadPlugins();
-        startPlugins();
+        if (lazyBoot) {
+            // only index the plugins, and load them on the first startup of their products
+            for (Path jar : lazyPluginIndex.index(Paths.get(path))) {
+                try {
+                    loadPlugin(jar.toString());
+                    startPlugin(jar.toString());
+                } catch (Exception e) {
+                    log.error("failed to load plugin {}, skip it", jar, e);
+                }
+            }
+            synchronized (manager) {
+                refreshSupportedProducts();
+            }
+        } else if (backgroundBoot) {
+            // serve once the first plugin ready, the others keep loading in background
+            CompletableFuture<Void> loading = new CompletableFuture<>();
+            this.bootLoading = loading;
+            BackgroundPluginLoader loader = new BackgroundPluginLoader(manager, Paths.get(path), backgroundPoolSize, this::onPluginReady);
+            loader.start().whenComplete((v, t) -> {
+                loading.complete(null);
+                onPluginReady();
+            });
+            loader.awaitFirstReady(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } else {
+            loadPlugins();
+            startPlugins();
+        }
     }
 
     private Map<ClassLoadingStrategy.Source, Set<String>> convertPathPrefixBannedMap(
@@ -100,87 +148,257 @@ public class PluginManagerWrapperImpl implements IPluginManagerWrapper {
 
     @Override
     public void loadPlugins() {
-        manager.loadPlugins();
+        synchronized (manager) {
+            manager.loadPlugins();
+            lazyPluginIndex.clear();
+            refreshSupportedProducts();
+        }
     }
 
     @Override
     public void startPlugins() {
-        manager.startPlugins();
+        synchronized (manager) {
+            manager.startPlugins();
+            refreshSupportedProducts();
+        }
     }
 
     @Override
     public void loadPlugin(String path) {
-        manager.loadPlugin(Paths.get(path));
+        synchronized (manager) {
+            manager.loadPlugin(Paths.get(path));
+            refreshSupportedProducts();
+        }
     }
 
     @Override
     public void startPlugin(String path) {
-        manager.startPlugin(Paths.get(path));
+        synchronized (manager) {
+            manager.startPlugin(Paths.get(path));
+            refreshSupportedProducts();
+        }
     }
 
     @Override
     public void stopPlugin(String product) {
-        manager.stopPlugin(product);
+        bbcServiceCache.invalidateProduct(product);
+        lazyPluginIndex.ensureLoaded(product, manager);
+        synchronized (manager) {
+            manager.stopPlugin(product);
+            refreshSupportedProducts();
+            // drop the services cached by calls racing with the operation above
+            bbcServiceCache.invalidateProduct(product);
+        }
+        bbcLoggerRegistry.closeProduct(product);
     }
 
     @Override
     public void startPluginFromStop(String product) {
-        manager.startPluginFromStop(product);
+        bbcServiceCache.invalidateProduct(product);
+        lazyPluginIndex.ensureLoaded(product, manager);
+        synchronized (manager) {
+            manager.startPluginFromStop(product);
+            refreshSupportedProducts();
+            // drop the services cached by calls racing with the operation above
+            bbcServiceCache.invalidateProduct(product);
+        }
     }
 
     @Override
     public void reloadPlugin(String product) {
-        manager.reloadPlugin(product);
+        bbcServiceCache.invalidateProduct(product);
+        lazyPluginIndex.ensureLoaded(product, manager);
+        synchronized (manager) {
+            manager.reloadPlugin(product);
+            refreshSupportedProducts();
+            // drop the services cached by calls racing with the operation above
+            bbcServiceCache.invalidateProduct(product);
+        }
+        bbcLoggerRegistry.closeProduct(product);
     }
 
     @Override
     public void reloadPlugin(String product, String path) {
-        manager.reloadPlugin(product, Paths.get(path));
+        bbcServiceCache.invalidateProduct(product);
+        lazyPluginIndex.ensureLoaded(product, manager);
+        synchronized (manager) {
+            manager.reloadPlugin(product, Paths.get(path));
+            refreshSupportedProducts();
+            // drop the services cached by calls racing with the operation above
+            bbcServiceCache.invalidateProduct(product);
+        }
+        bbcLoggerRegistry.closeProduct(product);
     }
 
     @Override
     public IAntChainBridgePlugin getPlugin(String product) {
-        return manager.getPlugin(product);
+        lazyPluginIndex.ensureLoaded(product, manager);
+        synchronized (manager) {
+            return manager.getPlugin(product);
+        }
     }
 
     @Override
     public boolean hasPlugin(String product) {
-        return manager.hasPlugin(product);
+        synchronized (manager) {
+            return manager.hasPlugin(product) || lazyPluginIndex.contains(product);
+        }
     }
 
     @Override
     public List<String> allSupportProducts() {
-        return manager.allSupportProducts();
+        synchronized (manager) {
+            Set<String> products = lazyPluginIndex.products();
+            if (products.isEmpty()) {
+                return manager.allSupportProducts();
+            }
+            products.addAll(manager.allSupportProducts());
+            return new ArrayList<>(products);
+        }
+    }
+
+    @Override
+    public boolean isSupportedProduct(String product) {
+        return supportedProducts.contains(product);
+    }
+
+    /**
+     * Take a new snapshot of the products, with the lock of the manager held.
+     */
+    private void refreshSupportedProducts() {
+        Set<String> products = lazyPluginIndex.products();
+        products.addAll(manager.allSupportProducts());
+        supportedProducts = Collections.unmodifiableSet(products);
+    }
+
+    @Override
+    public boolean isReady() {
+        return bootLoading.isDone();
+    }
+
+    @Override
+    public CompletableFuture<Boolean> awaitPlugin(String product) {
+        CompletableFuture<Boolean> waiter = pluginWaiters.computeIfAbsent(product, p -> new CompletableFuture<>());
+        notifyPluginWaiters();
+        return waiter;
+    }
+
+    private void onPluginReady() {
+        synchronized (manager) {
+            refreshSupportedProducts();
+        }
+        notifyPluginWaiters();
+    }
+
+    private void notifyPluginWaiters() {
+        // read before checking the plugins, a jar done in between is checked again when boot done
+        boolean bootDone = bootLoading.isDone();
+        pluginWaiters.forEach((product, waiter) -> {
+            if (hasPlugin(product)) {
+                waiter.complete(true);
+            } else if (bootDone) {
+                waiter.complete(false);
+            }
+            if (waiter.isDone()) {
+                pluginWaiters.remove(product, waiter);
+            }
+        });
     }
 
     @Override
     public IBBCService createBBCService(String product, String domain) {
-        return manager.createBBCService(product, new CrossChainDomain(domain), createBBCServiceLogger(product, domain));
+        lazyPluginIndex.ensureLoaded(product, manager);
+        Logger bbcLogger = getBBCServiceLogger(product, domain);
+        synchronized (manager) {
+            // the domain is unique over all products, the service of another product is replaced
+            bbcServiceCache.invalidateDomain(domain);
+            IBBCService bbcService = manager.createBBCService(product, new CrossChainDomain(domain), bbcLogger);
+            if (ObjectUtil.isNotNull(bbcService)) {
+                bbcServiceCache.put(product, domain, bbcService);
+                domainProducts.put(domain, product);
+            }
+            return bbcService;
+        }
     }
 
     @Override
     public IBBCService getBBCService(String product, String domain) {
-        return manager.getBBCService(product, new CrossChainDomain(domain));
+        IBBCService bbcService = bbcServiceCache.get(product, domain);
+        if (ObjectUtil.isNotNull(bbcService)) {
+            return bbcService;
+        }
+        synchronized (manager) {
+            bbcService = manager.getBBCService(product, new CrossChainDomain(domain));
+            if (ObjectUtil.isNotNull(bbcService)) {
+                // cached under the lock, so no plugin operation can invalidate it in between
+                bbcServiceCache.put(product, domain, bbcService);
+            }
+        }
+        if (ObjectUtil.isNotNull(bbcService)) {
+            // appenders closed when the service shut down, reopen them for the service in use again
+            getBBCServiceLogger(product, domain);
+        }
+        return bbcService;
+    }
+
+    @Override
+    public IBBCService getCachedBBCService(String product, String domain) {
+        return bbcServiceCache.get(product, domain);
+    }
+
+    @Override
+    public void invalidateBBCService(String product, String domain) {
+        bbcServiceCache.invalidate(product, domain);
+    }
+
+    @Override
+    public void restoreBBCService(String product, String domain, IBBCService bbcService) {
+        synchronized (manager) {
+            bbcServiceCache.invalidateDomain(domain);
+            bbcServiceCache.put(product, domain, bbcService);
+        }
+    }
+
+    @Override
+    public void closeBBCServiceLogger(String product, String domain) {
+        bbcLoggerRegistry.close(product, domain);
+    }
+
+    @PreDestroy
+    public void closeBBCServiceLoggers() {
+        bbcLoggerRegistry.closeAll();
     }
 
     @Override
     public boolean hasDomain(String domain) {
-        return manager.hasDomain(new CrossChainDomain(domain));
+        synchronized (manager) {
+            return manager.hasDomain(new CrossChainDomain(domain));
+        }
     }
 
     @Override
     public List<String> allRunningDomains() {
-        return manager.allRunningDomains().stream().map(CrossChainDomain::toString).collect(Collectors.toList());
+        synchronized (manager) {
+            return manager.allRunningDomains().stream().map(CrossChainDomain::toString).collect(Collectors.toList());
+        }
     }
 
-    private Logger createBBCServiceLogger(String product, String domain) {
+    @Override
+    public List<String> allRunningDomains(String product) {
+        return allRunningDomains().stream()
+                .filter(domain -> StrUtil.equals(product, domainProducts.get(domain)))
+                .collect(Collectors.toList());
+    }
+
+    private Logger getBBCServiceLogger(String product, String domain) {
         if (!isBBCLogOn) {
             return null;
         }
-        String loggerName = getLoggerName(product, domain);
-        if (bbcLoggerMap.containsKey(loggerName) && ObjectUtil.isNotNull(bbcLoggerMap.get(loggerName))) {
-            return bbcLoggerMap.get(loggerName);
-        }
+        return bbcLoggerRegistry.getOrCreate(product, domain);
+    }
+
+    private Logger createBBCServiceLogger(String product, String domain) {
+        String loggerName = BBCLoggerRegistry.getLoggerName(product, domain);
         Path logFile = Paths.get(bbcLoggerDir, product, domain + ".log");
         Logger logger = LoggerFactory.getLogger(loggerName);
         if (logger instanceof ch.qos.logback.classic.Logger) {
@@ -221,7 +439,6 @@ public class PluginManagerWrapperImpl implements IPluginManagerWrapper {
             loggerLogback.setAdditive(false);
             loggerLogback.addAppender(asyncAppender);
 
-            bbcLoggerMap.put(loggerName, loggerLogback);
             log.info("bbc logger {} created", loggerName);
 
             return loggerLogback;
@@ -230,8 +447,4 @@ public class PluginManagerWrapperImpl implements IPluginManagerWrapper {
         log.debug("logger library not support for now");
         return null;
     }
-
-    private String getLoggerName(String product, String domain) {
-        return StrUtil.format("{}::{}", product, domain);
-    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cn.hutool.core.collection.CollUtil;
+import com.alipay.antchain.bridge.pluginserver.service.CrossChainMessage;
+import com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageType;
+import com.alipay.antchain.bridge.pluginserver.service.ProvableLedgerData;
+import com.alipay.antchain.bridge.pluginserver.service.ReadCrossChainMessagesByHeightResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * Convert the cross-chain messages from plugins into protobuf.
+ *
+ * <p>
+ * The byte arrays returned by plugins are wrapped into {@link ByteString} without copying,
+ * and absent fields share {@link ByteString#EMPTY}. So the arrays must not be modified by
+ * plugins after returned, which holds for all plugins building new messages for every call.
+ * </p>
+ */
+public class CrossChainMessageConverter {
+
+    private static final CrossChainMessageType[] MESSAGE_TYPES = new CrossChainMessageType[
+            com.alipay.antchain.bridge.commons.core.base.CrossChainMessage.CrossChainMessageType.values().length
+    ];
+
+    static {
+        for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+            MESSAGE_TYPES[i] = CrossChainMessageType.forNumber(i);
+        }
+    }
+
+    public static ReadCrossChainMessagesByHeightResponse.Builder toReadCrossChainMessagesByHeightResp(
+            long height,
+            List<com.alipay.antchain.bridge.commons.core.base.CrossChainMessage> messages
+    ) {
+        ReadCrossChainMessagesByHeightResponse.Builder builder = ReadCrossChainMessagesByHeightResponse.newBuilder()
+                .setHeight(height);
+        if (CollUtil.isEmpty(messages)) {
+            return builder;
+        }
+        List<CrossChainMessage> messageList = new ArrayList<>(messages.size());
+        for (com.alipay.antchain.bridge.commons.core.base.CrossChainMessage m : messages) {
+            messageList.add(toProto(m));
+        }
+        return builder.addAllMessageList(messageList);
+    }
+
+    public static CrossChainMessage toProto(com.alipay.antchain.bridge.commons.core.base.CrossChainMessage message) {
+        if (message.getMessage() == null) {
+            throw new IllegalArgumentException("null message body in cross-chain message");
+        }
+        return CrossChainMessage.newBuilder()
+                .setType(MESSAGE_TYPES[message.getType().ordinal()])
+                .setMessage(wrap(message.getMessage()))
+                .setProvableData(ProvableLedgerData.newBuilder()
+                        .setHeight(message.getProvableData().getHeight())
+                        .setLedgerData(wrap(message.getProvableData().getLedgerData()))
+                        .setProof(wrap(message.getProvableData().getProof()))
+                        .setBlockHash(wrap(message.getProvableData().getBlockHash()))
+                        .setTimestamp(message.getProvableData().getTimestamp())
+                        .setTxHash(wrap(message.getProvableData().getTxHash()))
+                ).build();
+    }
+
+    /**
+     * Wrap the array without copying.
+     *
+     * @return {@link ByteString#EMPTY} if the array is null or empty
+     */
+    public static ByteString wrap(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return ByteString.EMPTY;
+        }
+        return UnsafeByteOperations.unsafeWrap(bytes);
+    }
+}
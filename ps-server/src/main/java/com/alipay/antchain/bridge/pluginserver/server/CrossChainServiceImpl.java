@@ -16,6 +16,13 @@
 
 package com.alipay.antchain.bridge.pluginserver.server;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Resource;
 
@@ -26,21 +33,73 @@ import com.alipay.antchain.bridge.commons.bbc.DefaultBBCContext;
 import com.alipay.antchain.bridge.commons.bbc.syscontract.SDPContract;
 import com.alipay.antchain.bridge.commons.core.base.CrossChainMessageReceipt;
 import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.AsyncBBCServiceAdapter;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.IAsyncBBCService;
 import com.alipay.antchain.bridge.pluginserver.pluginmanager.IPluginManagerWrapper;
+import com.alipay.antchain.bridge.pluginserver.server.cache.HeightMessagesCache;
+import com.alipay.antchain.bridge.pluginserver.server.cache.LatestHeightTracker;
+import com.alipay.antchain.bridge.pluginserver.server.cache.ReceiptCache;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallCoalescer;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallDispatcher;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallLimiter;
+import com.alipay.antchain.bridge.pluginserver.server.exception.BBCCallException;
 import com.alipay.antchain.bridge.pluginserver.server.exception.ServerErrorCodeEnum;
 import com.alipay.antchain.bridge.pluginserver.server.interceptor.RequestTraceInterceptor;
+import com.alipay.antchain.bridge.pluginserver.server.interceptor.ResponseCompressionInterceptor;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import com.alipay.antchain.bridge.pluginserver.server.store.BBCContextStore;
 import com.alipay.antchain.bridge.pluginserver.service.*;
 import com.google.protobuf.ByteString;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Value;
 
-@GrpcService(interceptors = RequestTraceInterceptor.class)
+@GrpcService(interceptors = {RequestTraceInterceptor.class, ResponseCompressionInterceptor.class})
 @Slf4j
 public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServiceImplBase {
     @Resource
     private IPluginManagerWrapper pluginManagerWrapper;
 
+    @Resource
+    private BBCCallDispatcher bbcCallDispatcher;
+
+    @Resource
+    private BBCCallCoalescer bbcCallCoalescer;
+
+    @Resource
+    private BBCCallLimiter bbcCallLimiter;
+
+    @Resource
+    private BBCCallMetrics bbcCallMetrics;
+
+    @Resource
+    private HeightMessagesCache heightMessagesCache;
+
+    @Resource
+    private LatestHeightTracker latestHeightTracker;
+
+    @Resource
+    private ReceiptCache receiptCache;
+
+    @Resource
+    private BBCContextStore bbcContextStore;
+
+    @Value("${pluginserver.dispatch.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${pluginserver.dispatch.session.max-in-flight:128}")
+    private int maxInFlightPerSession;
+
+    @Value("${pluginserver.dispatch.cancel.skip-queued:true}")
+    private boolean skipCancelledCalls;
+
+    @Value("${pluginserver.dispatch.cancel.interrupt:false}")
+    private boolean interruptCancelledCalls;
+
     @Override
     public void heartbeat(Empty request, StreamObserver<Response> responseObserver) {
         responseObserver.onNext(
@@ -77,45 +136,277 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
 
     @Override
     public void bbcCall(CallBBCRequest request, StreamObserver<Response> responseObserver) {
-        String product = request.getProduct();
-        String domain = request.getDomain();
-        Response resp;
+        dispatchBBCCall(request, resp -> {
+            if (bbcCallLimiter.isRejectWithStatus() && resp.getCode() == ServerErrorCodeEnum.BBC_CALL_OVERLOADED.getErrorCode()) {
+                responseObserver.onError(Status.RESOURCE_EXHAUSTED.withDescription(resp.getErrorMsg()).asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(resp);
+            responseObserver.onCompleted();
+        });
+    }
 
-        // 1. Startup request needs to be handled separately， because it may need create a service first.
-        if (request.hasStartUpReq()) {
-            responseObserver.onNext(handleStartUp(product, domain, request.getStartUpReq()));
+    @Override
+    public void batchBbcCall(BatchCallBBCRequest request, StreamObserver<Response> responseObserver) {
+        int size = request.getRequestsCount();
+        if (size > maxBatchSize) {
+            log.error("BBCCall(batchBbcCall) fail [size: {}, errorCode: {}, errorMsg: {}]",
+                    size, ServerErrorCodeEnum.BBC_BATCH_TOO_LARGE.getErrorCode(), ServerErrorCodeEnum.BBC_BATCH_TOO_LARGE.getShortMsg());
+            responseObserver.onNext(ResponseBuilder.buildFailResp(
+                    ServerErrorCodeEnum.BBC_BATCH_TOO_LARGE,
+                    StrUtil.format("batch size {} is over limit {}", size, maxBatchSize)
+            ));
             responseObserver.onCompleted();
             return;
         }
-
-        if (!pluginManagerWrapper.hasPlugin(product)) {
-            responseObserver.onNext(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_PLUGIN_NOT_SUPPORT, "product not supported"));
+        if (size == 0) {
+            responseObserver.onNext(ResponseBuilder.buildBatchBBCSuccessResp(BatchCallBBCResponse.newBuilder()));
             responseObserver.onCompleted();
             return;
         }
 
-        if (!pluginManagerWrapper.hasDomain(domain)) {
-            responseObserver.onNext(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_OBJECT_NOT_STARTED, "call startup plz"));
-            responseObserver.onCompleted();
+        // requests are put into lanes in order, so those for the same domain run in order
+        // and those for different domains run in parallel.
+        Response[] responses = new Response[size];
+        AtomicInteger remaining = new AtomicInteger(size);
+        Runnable completeIfLast = () -> {
+            if (remaining.decrementAndGet() == 0) {
+                responseObserver.onNext(ResponseBuilder.buildBatchBBCSuccessResp(
+                        BatchCallBBCResponse.newBuilder().addAllResponses(Arrays.asList(responses))
+                ));
+                responseObserver.onCompleted();
+            }
+        };
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            dispatchBBCCall(request.getRequests(i), resp -> {
+                responses[index] = resp;
+                completeIfLast.run();
+            });
+        }
+    }
+
+    @Override
+    public StreamObserver<BBCSessionRequest> bbcCallSession(StreamObserver<BBCSessionResponse> responseObserver) {
+        return new BBCCallSession((ServerCallStreamObserver<BBCSessionResponse>) responseObserver);
+    }
+
+    /**
+     * Put the call into the lane of its domain, or let it wait for the
+     * identical read in flight, and then pass the response to {@code onResponse}.
+     *
+     * <p>
+     * A call whose relayer has cancelled or whose deadline has passed is skipped
+     * once it comes out of the lane, unless some identical calls are following it.
+     * </p>
+     *
+     * <p>
+     * Calls to a plugin implementing {@link IAsyncBBCService} give the worker back
+     * while waiting for the chain, and the response is passed on completion.
+     * </p>
+     */
+    private void dispatchBBCCall(CallBBCRequest request, Consumer<Response> onResponse) {
+        Context context = Context.current();
+        BBCCallMetrics.Sample sample = bbcCallMetrics.start(request);
+        Response cachedResp = getCachedResp(request);
+        if (ObjectUtil.isNotNull(cachedResp)) {
+            onResponse.accept(sample.stop(cachedResp));
+            return;
+        }
+        BBCCallCoalescer.CoalescedCall call = bbcCallCoalescer.join(request);
+        if (!call.isLeader()) {
+            sample.coalesced();
+            call.whenDone(resp -> onResponse.accept(sample.stop(resp)));
             return;
         }
+        BBCCallLimiter.Permit permit = bbcCallLimiter.tryAcquire(request.getProduct(), request.getDomain());
+        if (ObjectUtil.isNull(permit)) {
+            onResponse.accept(sample.stop(call.complete(buildOverloadedResp(request))));
+            return;
+        }
+        boolean accepted = bbcCallDispatcher.dispatchAsync(
+                request.getProduct(),
+                request.getDomain(),
+                () -> {
+                    CompletableFuture<Response> future;
+                    try {
+                        future = skipCancelledCalls && context.isCancelled() && call.abandon() ?
+                                CompletableFuture.completedFuture(buildCancelledResp(request, context)) : handleBBCCallCancellable(request, context, call);
+                    } catch (Throwable t) {
+                        // the call and its followers must be answered whatever thrown
+                        future = CompletableFuture.completedFuture(buildUnknownErrorResp(request, t));
+                    }
+                    return future.handle((resp, t) -> {
+                        permit.release();
+                        Response finalResp = ObjectUtil.isNull(t) ? resp : buildUnknownErrorResp(request, unwrap(t));
+                        onResponse.accept(sample.stop(call.complete(finalResp)));
+                        return null;
+                    });
+                }
+        );
+        if (!accepted) {
+            permit.release();
+            onResponse.accept(sample.stop(call.complete(buildRejectedResp(request))));
+        }
+    }
 
-        // 2. Other bbc requests need to be processed based on an existing service.
-        IBBCService bbcService;
+    /**
+     * Handle the call and interrupt the worker if the relayer has gone during the call,
+     * which only works for plugins blocked interruptibly on the worker.
+     */
+    private CompletableFuture<Response> handleBBCCallCancellable(CallBBCRequest request, Context context, BBCCallCoalescer.CoalescedCall call) {
+        if (!interruptCancelledCalls || context == Context.ROOT) {
+            return handleBBCCallSafely(request);
+        }
+        Thread worker = Thread.currentThread();
+        // the listener may run on another thread at any time, so it only interrupts the worker
+        // while the call is still on it, otherwise the interrupt would hit the next call
+        AtomicBoolean onWorker = new AtomicBoolean(true);
+        Context.CancellationListener interrupter = ctx -> {
+            if (call.abandon()) {
+                synchronized (onWorker) {
+                    if (onWorker.get()) {
+                        log.warn("interrupt bbc call [product: {}, domain: {}, request: {}] since relayer gone",
+                                request.getProduct(), request.getDomain(), request.getRequestCase());
+                        worker.interrupt();
+                    }
+                }
+            }
+        };
+        context.addListener(interrupter, Runnable::run);
         try {
-            bbcService = pluginManagerWrapper.getBBCService(product, domain);
-            if (ObjectUtil.isNull(bbcService)) {
-                throw new RuntimeException("null bbc service object");
+            return handleBBCCallSafely(request);
+        } finally {
+            context.removeListener(interrupter);
+            synchronized (onWorker) {
+                onWorker.set(false);
             }
-        } catch (Exception e){
-            log.error("BBCCall fail when getting the bbc object [product: {}, domain: {}, request: {}, errorCode: {}, errorMsg: {}]",
-                    product, domain, request.getRequestCase(), ServerErrorCodeEnum.BBC_GET_SERVICE_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_GET_SERVICE_ERROR.getShortMsg(), e);
-            responseObserver.onNext(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_GET_SERVICE_ERROR, e.toString()));
+            // clear the interrupt, the worker goes on with other calls
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * @return the response built from memory without waiting in the lane, or null
+     */
+    private Response getCachedResp(CallBBCRequest request) {
+        switch (request.getRequestCase()) {
+            case QUERYLATESTHEIGHTREQ:
+                Long height = latestHeightTracker.get(request.getProduct(), request.getDomain());
+                return ObjectUtil.isNull(height) ? null : buildQueryLatestHeightResp(height);
+            case READCROSSCHAINMESSAGERECEIPTREQ:
+                com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt receipt = receiptCache.get(
+                        request.getProduct(), request.getDomain(), request.getReadCrossChainMessageReceiptReq().getTxhash());
+                return ObjectUtil.isNull(receipt) ? null : buildReadCrossChainMessageReceiptResp(receipt);
+            default:
+                return null;
+        }
+    }
+
+    private Response buildCancelledResp(CallBBCRequest request, Context context) {
+        log.warn("BBCCall skipped [product: {}, domain: {}, request: {}, errorCode: {}, errorMsg: {}, cause: {}]",
+                request.getProduct(), request.getDomain(), request.getRequestCase(),
+                ServerErrorCodeEnum.BBC_CALL_CANCELLED.getErrorCode(), ServerErrorCodeEnum.BBC_CALL_CANCELLED.getShortMsg(),
+                ObjectUtil.isNull(context.cancellationCause()) ? "unknown" : context.cancellationCause().getMessage());
+        return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_CALL_CANCELLED);
+    }
+
+    private Response buildOverloadedResp(CallBBCRequest request) {
+        log.error("BBCCall fail [product: {}, domain: {}, request: {}, errorCode: {}, errorMsg: {}]",
+                request.getProduct(), request.getDomain(), request.getRequestCase(), ServerErrorCodeEnum.BBC_CALL_OVERLOADED.getErrorCode(), ServerErrorCodeEnum.BBC_CALL_OVERLOADED.getShortMsg());
+        return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_CALL_OVERLOADED);
+    }
+
+    private Response buildRejectedResp(CallBBCRequest request) {
+        log.error("BBCCall fail [product: {}, domain: {}, request: {}, errorCode: {}, errorMsg: {}]",
+                request.getProduct(), request.getDomain(), request.getRequestCase(), ServerErrorCodeEnum.BBC_CALL_REJECTED.getErrorCode(), ServerErrorCodeEnum.BBC_CALL_REJECTED.getShortMsg());
+        return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_CALL_REJECTED);
+    }
+
+    private CompletableFuture<Response> handleBBCCallSafely(CallBBCRequest request) {
+        CompletableFuture<Response> future;
+        try {
+            future = handleBBCCall(request);
+        } catch (Throwable t) {
+            // e.g. LinkageError from the classloader of the plugin
+            return CompletableFuture.completedFuture(buildUnknownErrorResp(request, t));
+        }
+        return future.exceptionally(e -> buildUnknownErrorResp(request, unwrap(e)));
+    }
+
+    private Response buildUnknownErrorResp(CallBBCRequest request, Throwable e) {
+        log.error("BBCCall fail [product: {}, domain: {}, request: {}, errorCode: {}, errorMsg: {}]",
+                request.getProduct(), request.getDomain(), request.getRequestCase(), ServerErrorCodeEnum.UNKNOWN_ERROR.getErrorCode(), ServerErrorCodeEnum.UNKNOWN_ERROR.getShortMsg(), e);
+        return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.UNKNOWN_ERROR, e.toString());
+    }
+
+    /**
+     * @return the error thrown by the plugin out of the wrapper added by {@link CompletableFuture}
+     */
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && ObjectUtil.isNotNull(t.getCause()) ? t.getCause() : t;
+    }
+
+    /**
+     * @return the service itself if asynchronous, or the one calling the plugin on the current worker
+     */
+    private static IAsyncBBCService toAsync(IBBCService bbcService) {
+        return AsyncBBCServiceAdapter.of(bbcService, Runnable::run);
+    }
+
+    /**
+     * Call the asynchronous service, failing the future instead of throwing.
+     */
+    private static <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call) {
+        try {
+            return call.get();
+        } catch (Throwable t) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+            return future;
+        }
+    }
+
+    @Override
+    public void readCrossChainMessagesByHeightRange(ReadCrossChainMessagesByHeightRangeRequest request, StreamObserver<Response> responseObserver) {
+        if (request.getFromHeight() > request.getToHeight()) {
+            responseObserver.onNext(ResponseBuilder.buildFailResp(
+                    ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR,
+                    StrUtil.format("invalid height range [{}, {}]", request.getFromHeight(), request.getToHeight())
+            ));
             responseObserver.onCompleted();
             return;
         }
+        new HeightRangeReader(request, (ServerCallStreamObserver<Response>) responseObserver).start();
+    }
+
+    private CompletableFuture<Response> handleBBCCall(CallBBCRequest request) {
+        String product = request.getProduct();
+        String domain = request.getDomain();
+
+        // 1. Startup request needs to be handled separately， because it may need create a service first.
+        if (request.hasStartUpReq()) {
+            return CompletableFuture.completedFuture(handleStartUp(product, domain, request.getStartUpReq()));
+        }
+
+        // 2. Other bbc requests need to be processed based on an existing service.
+        IBBCService bbcService;
+        try {
+            bbcService = resolveBBCService(product, domain);
+        } catch (BBCCallException e) {
+            return CompletableFuture.completedFuture(ResponseBuilder.buildFailResp(e.getErrorCode(), e.getMessage()));
+        }
 
         // 3. Other bbc requests handler.
+        return handleBBCCall(bbcService, request, product, domain);
+    }
+
+    /**
+     * @return future of the response, completed already unless the plugin is asynchronous
+     */
+    private CompletableFuture<Response> handleBBCCall(IBBCService bbcService, CallBBCRequest request, String product, String domain) {
+        bbcContextStore.touch(product, domain);
+        Response resp;
         switch (request.getRequestCase()){
             case SHUTDOWNREQ:
                 resp = handleShutDown(bbcService, product, domain);
@@ -136,20 +427,15 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
                 resp = handleSetAmContract(bbcService, request.getSetAmContractReq(), product, domain);
                 break;
             case RELAYAUTHMESSAGEREQ:
-                resp = handleRelayAuthMessage(bbcService, request.getRelayAuthMessageReq(), product, domain);
-                break;
+                return handleRelayAuthMessage(toAsync(bbcService), request.getRelayAuthMessageReq(), product, domain);
             case READCROSSCHAINMESSAGERECEIPTREQ:
-                resp = handleReadCrossChainMessageReceiptRequest(bbcService, request.getReadCrossChainMessageReceiptReq(), product, domain);
-                break;
+                return handleReadCrossChainMessageReceiptRequest(toAsync(bbcService), request.getReadCrossChainMessageReceiptReq(), product, domain);
             case READCROSSCHAINMESSAGESBYHEIGHTREQ:
-                resp = handleReadCrossChainMessagesByHeight(bbcService, request.getReadCrossChainMessagesByHeightReq(), product, domain);
-                break;
+                return handleReadCrossChainMessagesByHeight(toAsync(bbcService), request.getReadCrossChainMessagesByHeightReq(), product, domain);
             case QUERYSDPMESSAGESEQREQ:
-                resp = handleQuerySDPMessageSeq(bbcService, request.getQuerySDPMessageSeqReq(), product, domain);
-                break;
+                return handleQuerySDPMessageSeq(toAsync(bbcService), request.getQuerySDPMessageSeqReq(), product, domain);
             case QUERYLATESTHEIGHTREQ:
-                resp = handleQueryLatestHeight(bbcService, product, domain);
-                break;
+                return handleQueryLatestHeight(toAsync(bbcService), product, domain);
             case SETLOCALDOMAINREQ:
                 resp = handleSetLocalDomain(bbcService, request.getSetLocalDomainReq(), product, domain);
                 break;
@@ -159,8 +445,39 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
                 break;
         }
 
-        responseObserver.onNext(resp);
-        responseObserver.onCompleted();
+        return CompletableFuture.completedFuture(resp);
+    }
+
+    /**
+     * Find the started bbc service for the domain.
+     *
+     * @throws BBCCallException if plugin or service not ready
+     */
+    private IBBCService resolveBBCService(String product, String domain) {
+        IBBCService cachedBBCService = pluginManagerWrapper.getCachedBBCService(product, domain);
+        if (ObjectUtil.isNotNull(cachedBBCService)) {
+            return cachedBBCService;
+        }
+
+        if (!pluginManagerWrapper.hasPlugin(product)) {
+            throw new BBCCallException(ServerErrorCodeEnum.BBC_PLUGIN_NOT_SUPPORT, "product not supported");
+        }
+
+        if (!pluginManagerWrapper.hasDomain(domain)) {
+            throw new BBCCallException(ServerErrorCodeEnum.BBC_OBJECT_NOT_STARTED, "call startup plz");
+        }
+
+        try {
+            IBBCService bbcService = pluginManagerWrapper.getBBCService(product, domain);
+            if (ObjectUtil.isNull(bbcService)) {
+                throw new RuntimeException("null bbc service object");
+            }
+            return bbcService;
+        } catch (Exception e){
+            log.error("BBCCall fail when getting the bbc object [product: {}, domain: {}, errorCode: {}, errorMsg: {}]",
+                    product, domain, ServerErrorCodeEnum.BBC_GET_SERVICE_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_GET_SERVICE_ERROR.getShortMsg(), e);
+            throw new BBCCallException(ServerErrorCodeEnum.BBC_GET_SERVICE_ERROR, e.toString(), e);
+        }
     }
 
     private Response handleStartUp(String product, String domain, StartUpRequest request) {
@@ -191,6 +508,11 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
             DefaultBBCContext ctx = new DefaultBBCContext();
             ctx.decodeFromBytes(request.getRawContext().toByteArray());
             bbcService.startup(ctx);
+            heightMessagesCache.invalidate(product, domain);
+            latestHeightTracker.untrack(product, domain);
+            receiptCache.invalidate(product, domain);
+            bbcContextStore.touch(product, domain);
+            bbcContextStore.saveContext(product, domain, bbcService);
 
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder());
         } catch (Exception e){
@@ -201,7 +523,15 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
 
     private Response handleShutDown(IBBCService bbcService, String product, String domain) {
         try {
+            pluginManagerWrapper.invalidateBBCService(product, domain);
+            heightMessagesCache.invalidate(product, domain);
+            latestHeightTracker.untrack(product, domain);
+            receiptCache.invalidate(product, domain);
+            bbcCallCoalescer.invalidate(product, domain);
+            bbcCallMetrics.remove(product, domain);
             bbcService.shutdown();
+            pluginManagerWrapper.closeBBCServiceLogger(product, domain);
+            bbcContextStore.remove(product, domain);
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder());
         } catch (Exception e){
             log.error("BBCCall(handleShutDown) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_SHUTDOWN_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_SHUTDOWN_ERROR.getShortMsg(), e);
@@ -226,6 +556,7 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
     private Response handleSetupSDPMessageContract(IBBCService bbcService, String product, String domain) {
         try {
             bbcService.setupSDPMessageContract();
+            bbcContextStore.saveContext(product, domain, bbcService);
             SDPContract sdp = bbcService.getContext().getSdpContract();
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                     .setSetupSDPResp(SetupSDPMessageContractResponse.newBuilder()
@@ -245,6 +576,7 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
     private Response handleSetupAuthMessageContract(IBBCService bbcService, String product, String domain) {
         try {
             bbcService.setupAuthMessageContract();
+            bbcContextStore.saveContext(product, domain, bbcService);
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
                     .setSetupAMResp(SetupAuthMessageContractResponse.newBuilder()
                             .setAmContract(
@@ -263,6 +595,7 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
     private Response handleSetProtocol(IBBCService bbcService, SetProtocolRequest request, String product, String domain) {
         try {
             bbcService.setProtocol(request.getProtocolAddress(), request.getProtocolType());
+            bbcContextStore.saveContext(product, domain, bbcService);
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder());
         } catch (Exception e) {
             log.error("BBCCall(handleSetProtocol) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_SETPROTOCOL_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_SETPROTOCOL_ERROR.getShortMsg(), e);
@@ -273,6 +606,7 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
     private Response handleSetAmContract(IBBCService bbcService, SetAmContractRequest request, String product, String domain) {
         try {
             bbcService.setAmContract(request.getContractAddress());
+            bbcContextStore.saveContext(product, domain, bbcService);
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder());
         } catch (Exception e) {
             log.error("BBCCall(handleSetAmContract) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_SETAMCONTRACT_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_SETAMCONTRACT_ERROR.getShortMsg(), e);
@@ -280,123 +614,137 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
         }
     }
 
-    private Response handleRelayAuthMessage(IBBCService bbcService, RelayAuthMessageRequest request, String product, String domain) {
-        try {
-            CrossChainMessageReceipt ret = bbcService.relayAuthMessage(request.getRawMessage().toByteArray());
-            return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
-                    .setRelayAuthMessageResponse(RelayAuthMessageResponse.newBuilder()
-                            .setReceipt(com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt.newBuilder()
+    private CompletableFuture<Response> handleRelayAuthMessage(IAsyncBBCService bbcService, RelayAuthMessageRequest request, String product, String domain) {
+        return callAsync(() -> bbcService.relayAuthMessageAsync(request.getRawMessage().toByteArray()))
+                .thenApply(ret -> {
+                    com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt receipt =
+                            com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt.newBuilder()
                                     .setTxhash(ObjectUtil.defaultIfNull(ret.getTxhash(), ""))
                                     .setConfirmed(ret.isConfirmed())
                                     .setSuccessful(ret.isSuccessful())
                                     .setErrorMsg(ObjectUtil.defaultIfNull(ret.getErrorMsg(), ""))
+                                    .build();
+                    receiptCache.put(product, domain, receipt.getTxhash(), receipt);
+                    return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                            .setRelayAuthMessageResponse(RelayAuthMessageResponse.newBuilder()
+                                    .setReceipt(receipt)
                             )
-                    )
-            );
-        } catch (Exception e) {
-            log.error("BBCCall(handleRelayAuthMessage) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_RELAYAUTHMESSAGE_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_RELAYAUTHMESSAGE_ERROR.getShortMsg(), e);
-            return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_RELAYAUTHMESSAGE_ERROR, e.toString());
-        }
+                    );
+                }).exceptionally(t -> {
+                    Throwable e = unwrap(t);
+                    log.error("BBCCall(handleRelayAuthMessage) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_RELAYAUTHMESSAGE_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_RELAYAUTHMESSAGE_ERROR.getShortMsg(), e);
+                    return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_RELAYAUTHMESSAGE_ERROR, e.toString());
+                });
     }
 
-    private Response handleReadCrossChainMessageReceiptRequest(IBBCService bbcService, ReadCrossChainMessageReceiptRequest request, String product, String domain) {
-        try {
-            CrossChainMessageReceipt receipt = bbcService.readCrossChainMessageReceipt(request.getTxhash());
-            if (ObjectUtil.isNull(receipt)) {
-                throw new RuntimeException("empty receipt for tx " + request.getTxhash());
-            }
-
-            return ResponseBuilder.buildBBCSuccessResp(
-                    CallBBCResponse.newBuilder().setReadCrossChainMessageReceiptResp(
-                            ReadCrossChainMessageReceiptResponse.newBuilder()
-                                    .setReceipt(
-                                            com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt.newBuilder()
-                                                    .setConfirmed(receipt.isConfirmed())
-                                                    .setSuccessful(receipt.isSuccessful())
-                                                    .setTxhash(StrUtil.nullToDefault(receipt.getTxhash(), ""))
-                                                    .setErrorMsg(StrUtil.nullToDefault(receipt.getErrorMsg(), ""))
-                                    )
-                    )
-            );
-        } catch (Exception e) {
-            log.error("BBCCall(handleIsCrossChainMessageConfirmed) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_READ_CCMSG_RET_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_READ_CCMSG_RET_ERROR.getShortMsg(), e);
-            return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_READ_CCMSG_RET_ERROR, e.toString());
+    private CompletableFuture<Response> handleReadCrossChainMessageReceiptRequest(IAsyncBBCService bbcService, ReadCrossChainMessageReceiptRequest request, String product, String domain) {
+        com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt cachedReceipt = receiptCache.get(product, domain, request.getTxhash());
+        if (ObjectUtil.isNotNull(cachedReceipt)) {
+            return CompletableFuture.completedFuture(buildReadCrossChainMessageReceiptResp(cachedReceipt));
         }
+        return callAsync(() -> bbcService.readCrossChainMessageReceiptAsync(request.getTxhash()))
+                .thenApply(receipt -> {
+                    if (ObjectUtil.isNull(receipt)) {
+                        throw new RuntimeException("empty receipt for tx " + request.getTxhash());
+                    }
+
+                    com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt receiptProto =
+                            com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt.newBuilder()
+                                    .setConfirmed(receipt.isConfirmed())
+                                    .setSuccessful(receipt.isSuccessful())
+                                    .setTxhash(StrUtil.nullToDefault(receipt.getTxhash(), ""))
+                                    .setErrorMsg(StrUtil.nullToDefault(receipt.getErrorMsg(), ""))
+                                    .build();
+                    receiptCache.put(product, domain, request.getTxhash(), receiptProto);
+                    return buildReadCrossChainMessageReceiptResp(receiptProto);
+                }).exceptionally(t -> {
+                    Throwable e = unwrap(t);
+                    log.error("BBCCall(handleIsCrossChainMessageConfirmed) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_READ_CCMSG_RET_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_READ_CCMSG_RET_ERROR.getShortMsg(), e);
+                    return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_READ_CCMSG_RET_ERROR, e.toString());
+                });
     }
 
-    private Response handleReadCrossChainMessagesByHeight(IBBCService bbcService, ReadCrossChainMessagesByHeightRequest request, String product, String domain) {
-        try {
-            return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
-                    .setReadCrossChainMessagesByHeightResp(ReadCrossChainMessagesByHeightResponse.newBuilder()
-                            .addAllMessageList(
-                                    bbcService.readCrossChainMessagesByHeight(request.getHeight()).stream()
-                                            .map(m -> CrossChainMessage.newBuilder()
-                                                    .setType(CrossChainMessageType.forNumber(m.getType().ordinal()))
-                                                    .setMessage(ByteString.copyFrom(m.getMessage()))
-                                                    .setProvableData(ProvableLedgerData.newBuilder()
-                                                            .setHeight(m.getProvableData().getHeight())
-                                                            .setLedgerData(ByteString.copyFrom(
-                                                                    ObjectUtil.defaultIfNull(m.getProvableData().getLedgerData(), new byte[]{})))
-                                                            .setProof(ByteString.copyFrom(
-                                                                    ObjectUtil.defaultIfNull(m.getProvableData().getProof(), new byte[]{})))
-                                                            .setBlockHash(ByteString.copyFrom(
-                                                                    ObjectUtil.defaultIfNull(m.getProvableData().getBlockHash(), new byte[]{})))
-                                                            .setTimestamp(m.getProvableData().getTimestamp())
-                                                            .setTxHash(ByteString.copyFrom(
-                                                                    ObjectUtil.defaultIfNull(m.getProvableData().getTxHash(), new byte[]{})))
-                                                    ).build()
-                                            ).collect(Collectors.toList())
-                            )
-                    )
-            );
-        } catch (Exception e) {
-            log.error("BBCCall(handleReadCrossChainMessagesByHeight) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR.getShortMsg(), e);
-            return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR, e.toString());
+    private Response buildReadCrossChainMessageReceiptResp(com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt receipt) {
+        return ResponseBuilder.buildBBCSuccessResp(
+                CallBBCResponse.newBuilder().setReadCrossChainMessageReceiptResp(
+                        ReadCrossChainMessageReceiptResponse.newBuilder().setReceipt(receipt)
+                )
+        );
+    }
+
+    private CompletableFuture<Response> handleReadCrossChainMessagesByHeight(IAsyncBBCService bbcService, ReadCrossChainMessagesByHeightRequest request, String product, String domain) {
+        Response cachedResp = heightMessagesCache.get(product, domain, request.getHeight());
+        if (ObjectUtil.isNotNull(cachedResp)) {
+            return CompletableFuture.completedFuture(cachedResp);
         }
+        return callAsync(() -> bbcService.readCrossChainMessagesByHeightAsync(request.getHeight()))
+                .thenApply(messages -> {
+                    Response resp = ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                            .setReadCrossChainMessagesByHeightResp(CrossChainMessageConverter.toReadCrossChainMessagesByHeightResp(
+                                    request.getHeight(),
+                                    messages
+                            ))
+                    );
+                    heightMessagesCache.put(product, domain, request.getHeight(), resp);
+                    return resp;
+                }).exceptionally(t -> {
+                    Throwable e = unwrap(t);
+                    log.error("BBCCall(handleReadCrossChainMessagesByHeight) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR.getShortMsg(), e);
+                    return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_READCROSSCHAINMESSAGESBYHEIGHT_ERROR, e.toString());
+                });
     }
 
-    private Response handleQuerySDPMessageSeq(IBBCService bbcService, QuerySDPMessageSeqRequest request, String product, String domain) {
-        try {
-            return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
-                    .setQuerySDPMsgSeqResp(QuerySDPMessageSeqResponse.newBuilder()
-                            .setSequence(
-                                    bbcService.querySDPMessageSeq(
-                                            request.getSenderDomain(),
-                                            request.getFromAddress(),
-                                            request.getReceiverDomain(),
-                                            request.getToAddress()
-                                    )
-                            )
-                    )
-            );
-        } catch (Exception e) {
+    private CompletableFuture<Response> handleQuerySDPMessageSeq(IAsyncBBCService bbcService, QuerySDPMessageSeqRequest request, String product, String domain) {
+        return callAsync(() -> bbcService.querySDPMessageSeqAsync(
+                request.getSenderDomain(),
+                request.getFromAddress(),
+                request.getReceiverDomain(),
+                request.getToAddress()
+        )).thenApply(seq -> ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                .setQuerySDPMsgSeqResp(QuerySDPMessageSeqResponse.newBuilder()
+                        .setSequence(seq)
+                )
+        )).exceptionally(t -> {
+            Throwable e = unwrap(t);
             log.error("BBCCall(handleQuerySDPMessageSeq) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]", product, domain, ServerErrorCodeEnum.BBC_QUERYSDPMESSAGESEQ_ERROR.getErrorCode(), ServerErrorCodeEnum.BBC_QUERYSDPMESSAGESEQ_ERROR.getShortMsg(), e);
             return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_QUERYSDPMESSAGESEQ_ERROR, e.toString());
-        }
+        });
     }
 
-    private Response handleQueryLatestHeight(IBBCService bbcService, String product, String domain) {
-        try {
-            return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
-                    .setQueryLatestHeightResponse(QueryLatestHeightResponse.newBuilder()
-                            .setHeight(bbcService.queryLatestHeight())
-                    )
-            );
-        } catch (Exception e) {
-            log.error(
-                    "BBCCall(handleQueryLatestHeight) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]",
-                    product, domain,
-                    ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR.getErrorCode(),
-                    ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR.getShortMsg(),
-                    e
-            );
-            return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR, e.toString());
-        }
+    private CompletableFuture<Response> handleQueryLatestHeight(IAsyncBBCService bbcService, String product, String domain) {
+        return callAsync(bbcService::queryLatestHeightAsync)
+                .thenApply(height -> {
+                    heightMessagesCache.updateLatestHeight(product, domain, height);
+                    latestHeightTracker.update(
+                            product, domain, height,
+                            () -> handleQueryLatestHeight(toAsync(resolveBBCService(product, domain)), product, domain).join()
+                    );
+                    return buildQueryLatestHeightResp(height);
+                }).exceptionally(t -> {
+                    Throwable e = unwrap(t);
+                    log.error(
+                            "BBCCall(handleQueryLatestHeight) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]",
+                            product, domain,
+                            ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR.getErrorCode(),
+                            ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR.getShortMsg(),
+                            e
+                    );
+                    return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_QUERYLATESTHEIGHT_ERROR, e.toString());
+                });
+    }
+
+    private Response buildQueryLatestHeightResp(long height) {
+        return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder()
+                .setQueryLatestHeightResponse(QueryLatestHeightResponse.newBuilder()
+                        .setHeight(height)
+                )
+        );
     }
 
     private Response handleSetLocalDomain(IBBCService bbcService, SetLocalDomainRequest request, String product, String domain) {
         try {
             bbcService.setLocalDomain(request.getDomain());
+            bbcContextStore.saveContext(product, domain, bbcService);
             return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder());
         } catch (Exception e) {
             log.error(
@@ -409,4 +757,225 @@ public class CrossChainServiceImpl extends CrossChainServiceGrpc.CrossChainServi
             return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_SETLOCALDOMAIN_ERROR, e.toString());
         }
     }
+
+    /**
+     * Read heights of the range one by one and stream the messages back.
+     *
+     * <p>
+     * Every height is read as a single task in the dispatcher lane of the domain,
+     * so other calls for the domain are not blocked by a long range. The next height
+     * is read only when the transport is ready to send, following the flow control of grpc.
+     * </p>
+     */
+    private class HeightRangeReader {
+
+        private final String product;
+
+        private final String domain;
+
+        private final long toHeight;
+
+        private final ServerCallStreamObserver<Response> responseObserver;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        private long currHeight;
+
+        private IBBCService bbcService;
+
+        private volatile boolean done = false;
+
+        HeightRangeReader(ReadCrossChainMessagesByHeightRangeRequest request, ServerCallStreamObserver<Response> responseObserver) {
+            this.product = request.getProduct();
+            this.domain = request.getDomain();
+            this.currHeight = request.getFromHeight();
+            this.toHeight = request.getToHeight();
+            this.responseObserver = responseObserver;
+        }
+
+        void start() {
+            responseObserver.setOnCancelHandler(() -> {
+                log.info("read messages range canceled by relayer [product: {}, domain: {}, height: {}]", product, domain, currHeight);
+                done = true;
+            });
+            responseObserver.setOnReadyHandler(this::schedule);
+            schedule();
+        }
+
+        private void schedule() {
+            if (done || !responseObserver.isReady() || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            if (!bbcCallDispatcher.dispatch(product, domain, this::readNext)) {
+                log.error("BBCCall(readCrossChainMessagesByHeightRange) fail [product: {}, domain: {}, errorCode: {}, errorMsg: {}]",
+                        product, domain, ServerErrorCodeEnum.BBC_CALL_REJECTED.getErrorCode(), ServerErrorCodeEnum.BBC_CALL_REJECTED.getShortMsg());
+                finish(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_CALL_REJECTED));
+            }
+        }
+
+        private void readNext() {
+            try {
+                // read on this thread until not ready if no worker to hand over
+                do {
+                    readOneHeight();
+                } while (!bbcCallDispatcher.isEnabled() && !done && responseObserver.isReady());
+            } catch (Throwable t) {
+                log.error("BBCCall(readCrossChainMessagesByHeightRange) fail [product: {}, domain: {}, height: {}, errorCode: {}, errorMsg: {}]",
+                        product, domain, currHeight, ServerErrorCodeEnum.UNKNOWN_ERROR.getErrorCode(), ServerErrorCodeEnum.UNKNOWN_ERROR.getShortMsg(), t);
+                finish(ResponseBuilder.buildFailResp(ServerErrorCodeEnum.UNKNOWN_ERROR, t.toString()));
+            } finally {
+                scheduled.set(false);
+            }
+            schedule();
+        }
+
+        private void readOneHeight() {
+            if (done) {
+                return;
+            }
+            if (ObjectUtil.isNull(bbcService)) {
+                try {
+                    bbcService = resolveBBCService(product, domain);
+                } catch (BBCCallException e) {
+                    finish(ResponseBuilder.buildFailResp(e.getErrorCode(), e.getMessage()));
+                    return;
+                }
+            }
+
+            Response resp = handleReadCrossChainMessagesByHeight(
+                    toAsync(bbcService),
+                    ReadCrossChainMessagesByHeightRequest.newBuilder().setHeight(currHeight).build(),
+                    product,
+                    domain
+            ).join();
+            if (resp.getCode() != ServerErrorCodeEnum.SUCCESS.getErrorCode() || currHeight >= toHeight) {
+                finish(resp);
+                return;
+            }
+            responseObserver.onNext(resp);
+            currHeight++;
+        }
+
+        private void finish(Response lastResp) {
+            if (done) {
+                return;
+            }
+            done = true;
+            responseObserver.onNext(lastResp);
+            responseObserver.onCompleted();
+        }
+    }
+
+    /**
+     * A session bound to one domain, opened by a relayer with {@code bbcCallSession}.
+     *
+     * <p>
+     * Calls are handled like unary {@code bbcCall} with the product and domain of
+     * the session, so they go through the limiter, coalescer, caches and the dispatcher
+     * lane of the domain, and the bbc service is resolved for every call since it may
+     * be shut down or reloaded at any time. At most {@code maxInFlightPerSession} calls
+     * are read from the relayer before their responses sent, which keeps the pipeline bounded.
+     * </p>
+     */
+    private class BBCCallSession implements StreamObserver<BBCSessionRequest> {
+
+        private final ServerCallStreamObserver<BBCSessionResponse> responseObserver;
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+
+        private volatile String product;
+
+        private volatile String domain;
+
+        private volatile boolean halfClosed = false;
+
+        private volatile boolean done = false;
+
+        BBCCallSession(ServerCallStreamObserver<BBCSessionResponse> responseObserver) {
+            this.responseObserver = responseObserver;
+            this.responseObserver.disableAutoRequest();
+            this.responseObserver.setOnCancelHandler(() -> {
+                log.info("bbc session canceled by relayer [product: {}, domain: {}]", product, domain);
+                done = true;
+            });
+            this.responseObserver.request(maxInFlightPerSession);
+        }
+
+        @Override
+        public void onNext(BBCSessionRequest request) {
+            inFlight.incrementAndGet();
+            switch (request.getRequestCase()) {
+                case OPENREQ:
+                    reply(request.getCallId(), open(request.getOpenReq()));
+                    break;
+                case CALLREQ:
+                    call(request.getCallId(), request.getCallReq());
+                    break;
+                default:
+                    reply(request.getCallId(), ResponseBuilder.buildFailResp(ServerErrorCodeEnum.UNSUPPORT_BBC_REQUEST_ERROR));
+                    break;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.warn("bbc session closed with error [product: {}, domain: {}]", product, domain, t);
+            done = true;
+        }
+
+        @Override
+        public void onCompleted() {
+            halfClosed = true;
+            completeIfIdle();
+        }
+
+        private Response open(OpenBBCSessionRequest request) {
+            if (StrUtil.isNotEmpty(domain)) {
+                return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_SESSION_ERROR, "session already opened for domain " + domain);
+            }
+            if (!pluginManagerWrapper.hasPlugin(request.getProduct())) {
+                return ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_PLUGIN_NOT_SUPPORT, "product not supported");
+            }
+            product = request.getProduct();
+            domain = request.getDomain();
+            log.info("bbc session opened [product: {}, domain: {}]", product, domain);
+            return ResponseBuilder.buildBBCSuccessResp(CallBBCResponse.newBuilder());
+        }
+
+        private void call(long callId, CallBBCRequest request) {
+            if (StrUtil.isEmpty(domain)) {
+                reply(callId, ResponseBuilder.buildFailResp(ServerErrorCodeEnum.BBC_SESSION_ERROR, "open session first plz"));
+                return;
+            }
+            dispatchBBCCall(
+                    request.toBuilder().setProduct(product).setDomain(domain).build(),
+                    resp -> reply(callId, resp)
+            );
+        }
+
+        private void reply(long callId, Response resp) {
+            if (!done && ObjectUtil.isNotNull(resp)) {
+                synchronized (responseObserver) {
+                    responseObserver.onNext(BBCSessionResponse.newBuilder().setCallId(callId).setResp(resp).build());
+                }
+            }
+            inFlight.decrementAndGet();
+            if (!done && !halfClosed) {
+                responseObserver.request(1);
+            }
+            completeIfIdle();
+        }
+
+        private void completeIfIdle() {
+            if (halfClosed && inFlight.get() == 0) {
+                synchronized (responseObserver) {
+                    if (!done) {
+                        done = true;
+                        log.info("bbc session closed [product: {}, domain: {}]", product, domain);
+                        responseObserver.onCompleted();
+                    }
+                }
+            }
+        }
+    }
 }
@@ -23,8 +23,11 @@ import javax.annotation.Resource;
 import cn.hutool.core.util.ObjectUtil;
 import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
 import com.alipay.antchain.bridge.pluginserver.managementservice.*;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryProgress;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryScheduler;
 import com.alipay.antchain.bridge.pluginserver.pluginmanager.IPluginManagerWrapper;
 import com.alipay.antchain.bridge.pluginserver.server.exception.ServerErrorCodeEnum;
+import com.alipay.antchain.bridge.pluginserver.server.recovery.BBCDomainRecovery;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -36,6 +39,12 @@ public class PluginManagementServiceImpl extends ManagementServiceGrpc.Managemen
     @Resource
     private IPluginManagerWrapper pluginManagerWrapper;
 
+    @Resource
+    private BBCDomainRecovery bbcDomainRecovery;
+
+    @Resource
+    private DomainRecoveryScheduler domainRecoveryScheduler;
+
     /**
      * <pre>
      * maintenance personnel may invoke this interface to load, unload, start, and stop plugins
@@ -265,4 +274,48 @@ public class PluginManagementServiceImpl extends ManagementServiceGrpc.Managemen
         );
         responseObserver.onCompleted();
     }
+
+    @Override
+    public void recoverDomains(RecoverDomainsRequest request, StreamObserver<ManageResponse> responseObserver) {
+        if (!pluginManagerWrapper.hasPlugin(request.getProduct())) {
+            responseObserver.onNext(
+                    ResponseBuilder.buildFailManageResp(ServerErrorCodeEnum.MANAGE_RECOVER_DOMAINS_ERROR, "product not found")
+            );
+            responseObserver.onCompleted();
+            return;
+        }
+        ManageResponse resp;
+        try {
+            int queued = bbcDomainRecovery.restartDomains(request.getProduct(), request.getDomainsList());
+            resp = ResponseBuilder.buildRecoverDomainsResp(RecoverDomainsResp.newBuilder().setQueued(queued));
+        } catch (Exception e) {
+            log.error("recoverDomains fail [product: {}, errorCode: {}, errorMsg: {}]",
+                    request.getProduct(),
+                    ServerErrorCodeEnum.MANAGE_RECOVER_DOMAINS_ERROR.getErrorCode(),
+                    ServerErrorCodeEnum.MANAGE_RECOVER_DOMAINS_ERROR.getShortMsg(), e);
+            resp = ResponseBuilder.buildFailManageResp(ServerErrorCodeEnum.MANAGE_RECOVER_DOMAINS_ERROR, e.toString());
+        }
+        responseObserver.onNext(resp);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void recoveryProgress(RecoveryProgressRequest request, StreamObserver<ManageResponse> responseObserver) {
+        DomainRecoveryProgress progress = domainRecoveryScheduler.getProgress();
+        responseObserver.onNext(
+                ResponseBuilder.buildRecoveryProgressResp(
+                        RecoveryProgressResp.newBuilder()
+                                .setTotal(progress.getTotal())
+                                .setRecovered(progress.getRecovered())
+                                .setSkipped(progress.getSkipped())
+                                .setFailed(progress.getFailed())
+                                .setRunning(progress.getRunning())
+                                .setQueued(progress.getQueued())
+                                .setStartTime(progress.getStartTime())
+                                .setFinishTime(progress.getFinishTime())
+                                .putAllFailures(progress.getFailures())
+                )
+        );
+        responseObserver.onCompleted();
+    }
 }
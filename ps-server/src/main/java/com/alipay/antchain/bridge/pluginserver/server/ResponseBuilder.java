@@ -60,6 +60,15 @@ public class ResponseBuilder {
                 .setIfDomainAliveResp(respBuilder).build();
     }
 
+    public static Response buildBatchBBCSuccessResp(BatchCallBBCResponse.Builder respBuilder) {
+        log.debug("call bbc service in batch of size {}", respBuilder.getResponsesCount());
+
+        return Response.newBuilder()
+                .setCode(ServerErrorCodeEnum.SUCCESS.getErrorCode())
+                .setErrorMsg(ServerErrorCodeEnum.SUCCESS.getShortMsg())
+                .setBatchBbcResp(respBuilder).build();
+    }
+
     public static Response buildFailResp(ServerErrorCodeEnum errorCodeEnum) {
 
         return Response.newBuilder()
@@ -130,6 +139,22 @@ public class ResponseBuilder {
                 .build();
     }
 
+    public static ManageResponse buildRecoverDomainsResp(RecoverDomainsResp.Builder respBuilder) {
+        return ManageResponse.newBuilder()
+                .setCode(ServerErrorCodeEnum.SUCCESS.getErrorCode())
+                .setErrorMsg(ServerErrorCodeEnum.SUCCESS.getShortMsg())
+                .setRecoverDomainsResp(respBuilder)
+                .build();
+    }
+
+    public static ManageResponse buildRecoveryProgressResp(RecoveryProgressResp.Builder respBuilder) {
+        return ManageResponse.newBuilder()
+                .setCode(ServerErrorCodeEnum.SUCCESS.getErrorCode())
+                .setErrorMsg(ServerErrorCodeEnum.SUCCESS.getShortMsg())
+                .setRecoveryProgressResp(respBuilder)
+                .build();
+    }
+
     public static ManageResponse buildFailManageResp(ServerErrorCodeEnum errorCodeEnum) {
 
         return ManageResponse.newBuilder()
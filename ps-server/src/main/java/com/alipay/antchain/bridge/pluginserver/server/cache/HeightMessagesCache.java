@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.server.exception.ServerErrorCodeEnum;
+import com.alipay.antchain.bridge.pluginserver.service.Response;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of the {@code readCrossChainMessagesByHeight} responses, indexed by
+ * {@code (product, domain, height)}.
+ *
+ * <p>
+ * Only the heights at or below {@code confirmation-depth} behind the latest height
+ * are cached, which are not going to change anymore. The depth must be at least 1, since
+ * the latest block could still be replaced by a fork, and the cache stays disabled with
+ * a smaller one. The latest height of a domain
+ * is learned from {@code queryLatestHeight}, so nothing is cached for a domain before
+ * its latest height queried. Responses are weighed by the serialized size and evicted
+ * when the total size is over {@code max-bytes}.
+ * </p>
+ *
+ * <p>
+ * Hits and misses are exposed as {@code cache.gets} tagged with
+ * {@code cache=pluginserver.bbc.height}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class HeightMessagesCache {
+
+    public static final String CACHE_NAME = "pluginserver.bbc.height";
+
+    @Value("${pluginserver.cache.height.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pluginserver.cache.height.confirmation-depth:12}")
+    private long confirmationDepth;
+
+    @Value("${pluginserver.cache.height.max-bytes:67108864}")
+    private long maxBytes;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Long> latestHeights = new ConcurrentHashMap<>();
+
+    private Cache<HeightKey, Response> cache;
+
+    @Autowired
+    public HeightMessagesCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (confirmationDepth < 1) {
+            log.error("height messages cache disabled: confirmation depth {} would cache the unconfirmed latest height, set it to 1 or more", confirmationDepth);
+            return;
+        }
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<HeightKey, Response>weigher((key, resp) -> resp.getSerializedSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        log.info("height messages cache enabled with {} bytes and confirmation depth {}", maxBytes, confirmationDepth);
+    }
+
+    /**
+     * @return the cached response or null
+     */
+    public Response get(String product, String domain, long height) {
+        if (ObjectUtil.isNull(cache)) {
+            return null;
+        }
+        return cache.getIfPresent(new HeightKey(product, domain, height));
+    }
+
+    /**
+     * Cache the response if it succeeded and the height is confirmed.
+     */
+    public void put(String product, String domain, long height, Response resp) {
+        if (ObjectUtil.isNull(cache) || resp.getCode() != ServerErrorCodeEnum.SUCCESS.getErrorCode()) {
+            return;
+        }
+        Long latestHeight = latestHeights.get(getDomainKey(product, domain));
+        if (ObjectUtil.isNull(latestHeight) || height > latestHeight - confirmationDepth) {
+            return;
+        }
+        cache.put(new HeightKey(product, domain, height), resp);
+    }
+
+    /**
+     * Record the latest height of the domain, which only moves forward.
+     */
+    public void updateLatestHeight(String product, String domain, long height) {
+        if (ObjectUtil.isNull(cache)) {
+            return;
+        }
+        latestHeights.merge(getDomainKey(product, domain), height, Math::max);
+    }
+
+    /**
+     * Drop everything about the domain, e.g. when its service restarted
+     * and may connect to another chain.
+     */
+    public void invalidate(String product, String domain) {
+        if (ObjectUtil.isNull(cache)) {
+            return;
+        }
+        latestHeights.remove(getDomainKey(product, domain));
+        cache.asMap().keySet().removeIf(key -> StrUtil.equals(key.product, product) && StrUtil.equals(key.domain, domain));
+    }
+
+    private String getDomainKey(String product, String domain) {
+        return StrUtil.format("{}::{}", product, domain);
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class HeightKey {
+
+        private final String product;
+
+        private final String domain;
+
+        private final long height;
+    }
+}
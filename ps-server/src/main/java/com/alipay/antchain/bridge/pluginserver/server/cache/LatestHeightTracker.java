@@ -0,0 +1,242 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.cache;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallDispatcher;
+import com.alipay.antchain.bridge.pluginserver.server.exception.BBCCallException;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Track the latest height of the domains, so that {@code queryLatestHeight}
+ * is answered from memory.
+ *
+ * <p>
+ * A domain is tracked once its latest height queried. Then the height is refreshed
+ * every {@code refresh-interval} in the dispatcher lane of the domain, and also updated
+ * by any {@code queryLatestHeight} going to the plugin. The height is served only if
+ * it is not older than {@code max-staleness}. A domain not queried in {@code idle-timeout}
+ * is not tracked anymore.
+ * </p>
+ *
+ * <p>
+ * The age of the height for each domain is exposed as {@code pluginserver.bbc.latest.height.lag}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class LatestHeightTracker {
+
+    @Value("${pluginserver.cache.latest-height.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pluginserver.cache.latest-height.refresh-interval:1000}")
+    private long refreshInterval;
+
+    @Value("${pluginserver.cache.latest-height.max-staleness:3000}")
+    private long maxStaleness;
+
+    @Value("${pluginserver.cache.latest-height.idle-timeout:60000}")
+    private long idleTimeout;
+
+    @Resource
+    private BBCCallDispatcher bbcCallDispatcher;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, TrackedDomain> trackedDomains = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService refresher;
+
+    @Autowired
+    public LatestHeightTracker(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        this.refresher = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("latest-height-refresher-").setDaemon(true).build()
+        );
+        log.info("latest height tracker enabled with refresh interval {} ms and max staleness {} ms", refreshInterval, maxStaleness);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ObjectUtil.isNotNull(refresher)) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the latest height not older than {@code max-staleness}, or null
+     */
+    public Long get(String product, String domain) {
+        if (!enabled) {
+            return null;
+        }
+        TrackedDomain trackedDomain = trackedDomains.get(getDomainKey(product, domain));
+        if (ObjectUtil.isNull(trackedDomain)) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        trackedDomain.lastAccessTime = now;
+        HeightSnapshot snapshot = trackedDomain.snapshot;
+        if (ObjectUtil.isNull(snapshot) || now - snapshot.updateTime > maxStaleness) {
+            return null;
+        }
+        return snapshot.height;
+    }
+
+    /**
+     * Update the latest height just read from the chain, and start tracking the domain.
+     *
+     * @param heightRefresher read the latest height from the plugin and pass it to this method,
+     *                        runs in the dispatcher lane of the domain
+     */
+    public void update(String product, String domain, long height, Runnable heightRefresher) {
+        if (!enabled) {
+            return;
+        }
+        TrackedDomain trackedDomain = trackedDomains.computeIfAbsent(
+                getDomainKey(product, domain),
+                k -> new TrackedDomain(product, domain, heightRefresher)
+        );
+        trackedDomain.snapshot = new HeightSnapshot(height, System.currentTimeMillis());
+    }
+
+    /**
+     * Stop tracking the domain, e.g. when its service restarted or shut down.
+     */
+    public void untrack(String product, String domain) {
+        if (!enabled) {
+            return;
+        }
+        TrackedDomain trackedDomain = trackedDomains.remove(getDomainKey(product, domain));
+        if (ObjectUtil.isNotNull(trackedDomain)) {
+            trackedDomain.close();
+        }
+    }
+
+    private String getDomainKey(String product, String domain) {
+        return StrUtil.format("{}::{}", product, domain);
+    }
+
+    private static class HeightSnapshot {
+
+        private final long height;
+
+        private final long updateTime;
+
+        HeightSnapshot(long height, long updateTime) {
+            this.height = height;
+            this.updateTime = updateTime;
+        }
+    }
+
+    private class TrackedDomain {
+
+        private final String product;
+
+        private final String domain;
+
+        private final Runnable heightRefresher;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+        private final Gauge lagGauge;
+
+        private final ScheduledFuture<?> refreshFuture;
+
+        private volatile HeightSnapshot snapshot;
+
+        private volatile long lastAccessTime = System.currentTimeMillis();
+
+        TrackedDomain(String product, String domain, Runnable heightRefresher) {
+            this.product = product;
+            this.domain = domain;
+            this.heightRefresher = heightRefresher;
+            this.lagGauge = Gauge.builder("pluginserver.bbc.latest.height.lag", this, TrackedDomain::lag)
+                    .description("age of the latest height served from memory")
+                    .baseUnit("milliseconds")
+                    .tags(BBCCallMetrics.TAG_PRODUCT, product, BBCCallMetrics.TAG_DOMAIN, domain)
+                    .register(meterRegistry);
+            this.refreshFuture = refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+            log.info("start to track latest height [product: {}, domain: {}]", product, domain);
+        }
+
+        private double lag() {
+            HeightSnapshot curr = snapshot;
+            return ObjectUtil.isNull(curr) ? Double.NaN : System.currentTimeMillis() - curr.updateTime;
+        }
+
+        private void refresh() {
+            if (System.currentTimeMillis() - lastAccessTime > idleTimeout) {
+                log.info("latest height not queried in {} ms, stop tracking [product: {}, domain: {}]", idleTimeout, product, domain);
+                trackedDomains.remove(getDomainKey(product, domain), this);
+                close();
+                return;
+            }
+            // skip if the last refresh still waiting in the lane
+            if (!refreshing.compareAndSet(false, true)) {
+                return;
+            }
+            boolean accepted = bbcCallDispatcher.dispatch(product, domain, () -> {
+                try {
+                    // untracked while waiting in the lane, do not track it again
+                    if (trackedDomains.get(getDomainKey(product, domain)) != this) {
+                        return;
+                    }
+                    heightRefresher.run();
+                } catch (BBCCallException e) {
+                    log.info("bbc service gone, stop tracking latest height [product: {}, domain: {}]", product, domain);
+                    untrack(product, domain);
+                } catch (Exception e) {
+                    log.warn("failed to refresh latest height [product: {}, domain: {}]", product, domain, e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+            if (!accepted) {
+                refreshing.set(false);
+            }
+        }
+
+        private void close() {
+            refreshFuture.cancel(false);
+            meterRegistry.remove(lagGauge);
+        }
+    }
+}
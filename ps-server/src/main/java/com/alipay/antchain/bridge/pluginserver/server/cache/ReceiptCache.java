@@ -0,0 +1,119 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import com.alipay.antchain.bridge.pluginserver.service.CrossChainMessageReceipt;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of the confirmed receipts for every domain, indexed by txhash.
+ *
+ * <p>
+ * A confirmed receipt never changes, so it is cached once read by
+ * {@code readCrossChainMessageReceipt} or returned by {@code relayAuthMessage}.
+ * Each domain keeps at most {@code max-size-per-domain} receipts, and hits and
+ * misses are exposed as {@code cache.gets} tagged with {@code cache=pluginserver.bbc.receipt}
+ * and the product and domain.
+ * </p>
+ */
+@Component
+public class ReceiptCache {
+
+    public static final String CACHE_NAME = "pluginserver.bbc.receipt";
+
+    @Value("${pluginserver.cache.receipt.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pluginserver.cache.receipt.max-size-per-domain:10000}")
+    private long maxSizePerDomain;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Cache<String, CrossChainMessageReceipt>> domainCaches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReceiptCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the confirmed receipt or null
+     */
+    public CrossChainMessageReceipt get(String product, String domain, String txhash) {
+        if (!enabled) {
+            return null;
+        }
+        Cache<String, CrossChainMessageReceipt> cache = domainCaches.get(getDomainKey(product, domain));
+        return ObjectUtil.isNull(cache) ? null : cache.getIfPresent(txhash);
+    }
+
+    /**
+     * Cache the receipt if it is confirmed.
+     */
+    public void put(String product, String domain, String txhash, CrossChainMessageReceipt receipt) {
+        if (!enabled || !receipt.getConfirmed() || StrUtil.isEmpty(txhash)) {
+            return;
+        }
+        domainCaches.computeIfAbsent(getDomainKey(product, domain), k -> newCache(product, domain))
+                .put(txhash, receipt);
+    }
+
+    /**
+     * Drop the receipts of the domain, e.g. when its service restarted
+     * and may connect to another chain.
+     */
+    public void invalidate(String product, String domain) {
+        if (!enabled) {
+            return;
+        }
+        Cache<String, CrossChainMessageReceipt> cache = domainCaches.get(getDomainKey(product, domain));
+        if (ObjectUtil.isNotNull(cache)) {
+            cache.invalidateAll();
+        }
+    }
+
+    private Cache<String, CrossChainMessageReceipt> newCache(String product, String domain) {
+        Cache<String, CrossChainMessageReceipt> cache = Caffeine.newBuilder()
+                .maximumSize(maxSizePerDomain)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(
+                meterRegistry,
+                cache,
+                CACHE_NAME,
+                Tags.of(BBCCallMetrics.TAG_PRODUCT, product, BBCCallMetrics.TAG_DOMAIN, domain)
+        );
+        return cache;
+    }
+
+    private String getDomainKey(String product, String domain) {
+        return StrUtil.format("{}::{}", product, domain);
+    }
+}
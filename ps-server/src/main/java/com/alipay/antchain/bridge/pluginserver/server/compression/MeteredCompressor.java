@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.compression;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import io.grpc.Compressor;
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Count the bytes of the messages before and after compressed by the delegate.
+ */
+public class MeteredCompressor implements Compressor {
+
+    private final Compressor delegate;
+
+    private final Counter rawBytes;
+
+    private final Counter compressedBytes;
+
+    public MeteredCompressor(Compressor delegate, Counter rawBytes, Counter compressedBytes) {
+        this.delegate = delegate;
+        this.rawBytes = rawBytes;
+        this.compressedBytes = compressedBytes;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+        return delegate.getMessageEncoding();
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+        return new CountingOutputStream(
+                delegate.compress(new CountingOutputStream(os, compressedBytes)),
+                rawBytes
+        );
+    }
+
+    /**
+     * Record the bytes written once closed, grpc closes the stream after each message.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private final Counter counter;
+
+        private long count;
+
+        private boolean closed;
+
+        CountingOutputStream(OutputStream out, Counter counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    counter.increment(count);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.compression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.PostConstruct;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.luben.zstd.util.Native;
+import com.google.protobuf.MessageLite;
+import io.grpc.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compress the large responses of the plugin server with the first codec in {@code codecs}
+ * that the relayer accepts by {@code grpc-accept-encoding}.
+ *
+ * <p>
+ * Responses smaller than {@code min-response-size} are sent uncompressed, since the cpu
+ * spent on them saves little bandwidth. The codecs are decompressed for the requests too.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code pluginserver.compression.bytes}: bytes of the compressed responses tagged with
+ *     codec, before ({@code stage=raw}) and after ({@code stage=compressed}) compressed</li>
+ *     <li>{@code pluginserver.compression.responses}: responses tagged with the codec used,
+ *     {@code identity} if not compressed</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ResponseCompression {
+
+    public static final String IDENTITY = "identity";
+
+    private static final Metadata.Key<String> ACCEPT_ENCODING_KEY =
+            Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+
+    @Getter
+    @Value("${pluginserver.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pluginserver.compression.codecs:zstd,gzip}")
+    private String[] codecs;
+
+    @Value("${pluginserver.compression.min-response-size:65536}")
+    private int minResponseSize;
+
+    @Value("${pluginserver.compression.zstd-level:3}")
+    private int zstdLevel;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Counter> responseCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Codecs available in the order of preference
+     */
+    @Getter
+    private List<String> messageEncodings = Collections.emptyList();
+
+    @Getter
+    private CompressorRegistry compressorRegistry;
+
+    @Getter
+    private DecompressorRegistry decompressorRegistry;
+
+    @Autowired
+    public ResponseCompression(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        compressorRegistry = CompressorRegistry.newEmptyInstance();
+        compressorRegistry.register(Codec.Identity.NONE);
+        decompressorRegistry = DecompressorRegistry.emptyInstance().with(Codec.Identity.NONE, false);
+        List<String> encodings = new ArrayList<>();
+        for (String name : codecs) {
+            Codec codec = newCodec(StrUtil.trim(name));
+            if (ObjectUtil.isNull(codec) || encodings.contains(codec.getMessageEncoding())) {
+                continue;
+            }
+            compressorRegistry.register(new MeteredCompressor(
+                    codec,
+                    buildBytesCounter(codec.getMessageEncoding(), "raw"),
+                    buildBytesCounter(codec.getMessageEncoding(), "compressed")
+            ));
+            decompressorRegistry = decompressorRegistry.with(codec, true);
+            encodings.add(codec.getMessageEncoding());
+        }
+        messageEncodings = Collections.unmodifiableList(encodings);
+        log.info("compress responses larger than {} bytes with codecs {}", minResponseSize, messageEncodings);
+    }
+
+    /**
+     * Register the codecs to the server, nothing changed if disabled.
+     */
+    public void apply(ServerBuilder<?> serverBuilder) {
+        if (!enabled) {
+            return;
+        }
+        serverBuilder.compressorRegistry(compressorRegistry)
+                .decompressorRegistry(decompressorRegistry);
+    }
+
+    /**
+     * @return the preferred codec accepted by the client, or null if none
+     */
+    public String negotiate(Metadata headers) {
+        String acceptEncoding = headers.get(ACCEPT_ENCODING_KEY);
+        if (StrUtil.isEmpty(acceptEncoding)) {
+            return null;
+        }
+        List<String> accepted = StrUtil.split(acceptEncoding, ',', true, true);
+        return messageEncodings.stream()
+                .filter(accepted::contains)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * @return true if the response is large enough to compress
+     */
+    public boolean shouldCompress(Object response) {
+        // serialized size is memoized by protobuf and used by the marshaller again
+        return response instanceof MessageLite
+                && ((MessageLite) response).getSerializedSize() >= minResponseSize;
+    }
+
+    /**
+     * Count the response sent with the codec, {@link #IDENTITY} if not compressed.
+     */
+    public void countResponse(String messageEncoding) {
+        responseCounters.computeIfAbsent(
+                messageEncoding,
+                encoding -> Counter.builder("pluginserver.compression.responses")
+                        .description("responses sent by codec")
+                        .tag("codec", encoding)
+                        .register(meterRegistry)
+        ).increment();
+    }
+
+    private Codec newCodec(String name) {
+        if (StrUtil.equalsIgnoreCase(name, "gzip")) {
+            return new Codec.Gzip();
+        }
+        if (StrUtil.equalsIgnoreCase(name, ZstdCodec.MESSAGE_ENCODING)) {
+            try {
+                Native.load();
+            } catch (Throwable t) {
+                log.warn("native zstd not available on this platform, codec zstd disabled", t);
+                return null;
+            }
+            return new ZstdCodec(zstdLevel);
+        }
+        log.warn("unknown compression codec {} ignored", name);
+        return null;
+    }
+
+    private Counter buildBytesCounter(String messageEncoding, String stage) {
+        return Counter.builder("pluginserver.compression.bytes")
+                .description("bytes of compressed responses before and after compressed")
+                .baseUnit("bytes")
+                .tag("codec", messageEncoding)
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import io.grpc.Codec;
+
+/**
+ * Message encoding {@code zstd} of grpc, much faster than gzip at a similar ratio.
+ *
+ * <p>
+ * Relayers register the same codec into the {@code DecompressorRegistry} of their channels
+ * to accept it.
+ * </p>
+ */
+public class ZstdCodec implements Codec {
+
+    public static final String MESSAGE_ENCODING = "zstd";
+
+    private final int level;
+
+    public ZstdCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+        return MESSAGE_ENCODING;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+        return new ZstdOutputStreamNoFinalizer(os, RecyclingBufferPool.INSTANCE, level);
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+        return new ZstdInputStreamNoFinalizer(is, RecyclingBufferPool.INSTANCE);
+    }
+}
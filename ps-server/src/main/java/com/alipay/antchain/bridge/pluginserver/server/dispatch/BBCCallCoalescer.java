@@ -0,0 +1,203 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.dispatch;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import cn.hutool.core.util.ObjectUtil;
+import com.alipay.antchain.bridge.pluginserver.service.CallBBCRequest;
+import com.alipay.antchain.bridge.pluginserver.service.Response;
+import com.google.protobuf.ByteString;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesce the identical read-only bbc calls in flight, so that they share
+ * one call to the plugin and get the same response.
+ *
+ * <p>
+ * Calls are identical if their serialized requests, including product and domain,
+ * are equal. A call joins the identical one only if no other kind of call for the
+ * domain has arrived in between, so a read following a write in the same lane
+ * always sees the result of the write.
+ * </p>
+ *
+ * <p>
+ * Only the three reads asked most often by relayers are coalesced: the latest height,
+ * the sdp message sequence and the message receipt.
+ * </p>
+ */
+@Component
+public class BBCCallCoalescer {
+
+    private static final Set<CallBBCRequest.RequestCase> READ_ONLY_CASES = EnumSet.of(
+            CallBBCRequest.RequestCase.QUERYLATESTHEIGHTREQ,
+            CallBBCRequest.RequestCase.QUERYSDPMESSAGESEQREQ,
+            CallBBCRequest.RequestCase.READCROSSCHAINMESSAGERECEIPTREQ
+    );
+
+    @Value("${pluginserver.dispatch.coalesce.enabled:true}")
+    private boolean enabled;
+
+    private final Map<ByteString, Flight> flights = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> writeEpochs = new ConcurrentHashMap<>();
+
+    /**
+     * Join the identical call in flight, or lead a new one.
+     *
+     * @return the call to complete if {@link CoalescedCall#isLeader()},
+     * otherwise wait for the response with {@link CoalescedCall#whenDone(Consumer)}
+     */
+    public CoalescedCall join(CallBBCRequest request) {
+        if (!enabled) {
+            return new CoalescedCall(null, true);
+        }
+        AtomicLong writeEpoch = writeEpochs.computeIfAbsent(
+                getDomainKey(request.getProduct(), request.getDomain()),
+                k -> new AtomicLong(0)
+        );
+        if (!READ_ONLY_CASES.contains(request.getRequestCase())) {
+            writeEpoch.incrementAndGet();
+            return new CoalescedCall(null, true);
+        }
+
+        long epoch = writeEpoch.get();
+        boolean[] leader = new boolean[]{false};
+        Flight flight = flights.compute(request.toByteString(), (key, curr) -> {
+            if (ObjectUtil.isNotNull(curr) && curr.writeEpoch == writeEpoch && curr.epoch == epoch) {
+                curr.followers.incrementAndGet();
+                return curr;
+            }
+            leader[0] = true;
+            return new Flight(key, writeEpoch, epoch);
+        });
+        return new CoalescedCall(flight, leader[0]);
+    }
+
+    /**
+     * Forget the domain shut down, the reads in flight before it
+     * are never followed by the calls after.
+     */
+    public void invalidate(String product, String domain) {
+        writeEpochs.remove(getDomainKey(product, domain));
+    }
+
+    /**
+     * @return number of the distinct calls in flight
+     */
+    public int inFlightCalls() {
+        return flights.size();
+    }
+
+    /**
+     * @return number of the domains with write epoch
+     */
+    public int trackedDomains() {
+        return writeEpochs.size();
+    }
+
+    private static String getDomainKey(String product, String domain) {
+        return product + "::" + domain;
+    }
+
+    private static class Flight {
+
+        private final ByteString key;
+
+        private final AtomicLong writeEpoch;
+
+        private final long epoch;
+
+        private final AtomicInteger followers = new AtomicInteger(0);
+
+        private final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        Flight(ByteString key, AtomicLong writeEpoch, long epoch) {
+            this.key = key;
+            this.writeEpoch = writeEpoch;
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * One caller of a flight, the leader or a follower.
+     */
+    public class CoalescedCall {
+
+        private final Flight flight;
+
+        private final boolean leader;
+
+        private CoalescedCall(Flight flight, boolean leader) {
+            this.flight = flight;
+            this.leader = leader;
+        }
+
+        /**
+         * @return true if this call should go to the plugin
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Called by the leader with its response, which is passed to all followers.
+         *
+         * @return the response passed in
+         */
+        public Response complete(Response response) {
+            if (leader && ObjectUtil.isNotNull(flight)) {
+                flights.remove(flight.key, flight);
+                flight.future.complete(response);
+            }
+            return response;
+        }
+
+        /**
+         * Called by the leader to give up the call, e.g. the caller has gone.
+         * No more calls could follow it once the method returns.
+         *
+         * @return false if some calls are following it, and it must go on and complete
+         */
+        public boolean abandon() {
+            if (!leader) {
+                return false;
+            }
+            if (ObjectUtil.isNull(flight)) {
+                return true;
+            }
+            flights.remove(flight.key, flight);
+            return flight.followers.get() == 0;
+        }
+
+        /**
+         * Called by a follower, the callback runs on the thread of the leader,
+         * or on the caller thread if the leader has completed.
+         */
+        public void whenDone(Consumer<Response> callback) {
+            flight.future.thenAccept(callback);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.dispatch;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dispatch the bbc calls from relayers to worker threads.
+ *
+ * <p>
+ * Every {@code (product, domain)} has its own lane. Calls in the same lane
+ * are executed one by one in the order they arrived, and different lanes
+ * are executed in parallel on a shared worker pool. So a blockchain with
+ * a hung node only holds one worker and never starves the other domains.
+ * </p>
+ *
+ * <p>
+ * A lane is dropped once it has no task queued or running, and created again by the next
+ * call, so the domains shut down or mistyped by relayers hold nothing.
+ * </p>
+ *
+ * <p>
+ * A task dispatched with {@link #dispatchAsync(String, String, Supplier)} gives its worker
+ * back once it returns, and the lane goes on with the next task when the returned stage
+ * completes, so calls of the lane still run one by one.
+ * </p>
+ *
+ * <p>
+ * A product with {@code pluginserver.plugin.<product>.pool-size} configured has a pool
+ * of its own as a bulkhead, so a slow plugin can not use up the workers of other products.
+ * Usage of every pool is exposed as the {@code executor.*} metrics tagged with
+ * {@code name=bbc-call-worker} and the product, {@code shared} for the shared pool.
+ * </p>
+ *
+ * <p>
+ * With {@code pluginserver.dispatch.virtual-threads} on JDK 21 or later, calls run on
+ * virtual threads, so that plugins blocked on chain nodes hold no platform threads.
+ * The shared pool starts a virtual thread for every lane ready to run and has no bound,
+ * while the pool of a product still runs at most {@code pool-size} calls at a time.
+ * It falls back to platform threads on the older runtimes.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BBCCallDispatcher {
+
+    private static final String SHARED_WORKERS = "shared";
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    @Value("${pluginserver.dispatch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${pluginserver.dispatch.pool-size:32}")
+    private int poolSize;
+
+    @Value("${pluginserver.dispatch.lane.max-pending:1024}")
+    private int maxPendingPerLane;
+
+    @Value("${pluginserver.dispatch.shutdown-timeout:10000}")
+    private long shutdownTimeout;
+
+    @Value("${pluginserver.dispatch.virtual-threads:false}")
+    private boolean virtualThreads;
+
+    @Resource
+    private Environment environment;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService workers;
+
+    private final Map<String, ExecutorService> productWorkers = new ConcurrentHashMap<>();
+
+    private final Map<String, DomainLane> lanes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("bbc call dispatcher disabled, calls run on grpc threads");
+            return;
+        }
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            log.warn("virtual threads need java 21 or later but running on java {}, use platform threads instead",
+                    System.getProperty("java.version"));
+            this.virtualThreads = false;
+        }
+        this.workers = newWorkers(SHARED_WORKERS, poolSize);
+        if (virtualThreads) {
+            log.info("bbc call dispatcher started with virtual threads and {} max pending calls per domain", maxPendingPerLane);
+        } else {
+            log.info("bbc call dispatcher started with {} workers and {} max pending calls per domain", poolSize, maxPendingPerLane);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (workers == null) {
+            return;
+        }
+        productWorkers.values().forEach(ExecutorService::shutdown);
+        workers.shutdown();
+        long deadline = System.currentTimeMillis() + shutdownTimeout;
+        for (ExecutorService executor : productWorkers.values()) {
+            awaitOrForceTermination(executor, deadline);
+        }
+        awaitOrForceTermination(workers, deadline);
+    }
+
+    private void awaitOrForceTermination(ExecutorService executor, long deadline) throws InterruptedException {
+        if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+            log.warn("bbc call workers not terminated in {} ms, force to shut down", shutdownTimeout);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Put the task into the lane of {@code (product, domain)}.
+     *
+     * @return false if the lane is full or dispatcher has been shut down
+     */
+    public boolean dispatch(String product, String domain, Runnable task) {
+        return dispatchAsync(product, domain, () -> {
+            task.run();
+            return DONE;
+        });
+    }
+
+    /**
+     * Put the asynchronous task into the lane of {@code (product, domain)}, the next task
+     * of the lane runs after the stage returned by this task completes.
+     *
+     * @return false if the lane is full or dispatcher has been shut down
+     */
+    public boolean dispatchAsync(String product, String domain, Supplier<? extends CompletionStage<?>> task) {
+        if (!enabled) {
+            task.get();
+            return true;
+        }
+        // reserve a place in the lane atomically, so that it is never dropped in between
+        DomainLane[] reserved = new DomainLane[1];
+        lanes.compute(getLaneKey(product, domain), (key, lane) -> {
+            DomainLane curr = ObjectUtil.isNull(lane) ? new DomainLane(key, getWorkers(product)) : lane;
+            if (curr.reserve()) {
+                reserved[0] = curr;
+            }
+            return curr;
+        });
+        return ObjectUtil.isNotNull(reserved[0]) && reserved[0].offer(task);
+    }
+
+    /**
+     * @return number of domains with calls queued or running
+     */
+    public int activeLanes() {
+        return lanes.size();
+    }
+
+    /**
+     * @return false if calls run on the caller threads directly
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return number of calls queued or running for {@code (product, domain)}
+     */
+    public int pendingCalls(String product, String domain) {
+        DomainLane lane = lanes.get(getLaneKey(product, domain));
+        return lane == null ? 0 : lane.pending.get();
+    }
+
+    private String getLaneKey(String product, String domain) {
+        return StrUtil.format("{}::{}", product, domain);
+    }
+
+    /**
+     * @return the pool of the product if configured, or the shared one
+     */
+    private ExecutorService getWorkers(String product) {
+        Integer productPoolSize = environment.getProperty(
+                StrUtil.format("pluginserver.plugin.{}.pool-size", product),
+                Integer.class
+        );
+        if (ObjectUtil.isNull(productPoolSize) || productPoolSize <= 0) {
+            return workers;
+        }
+        return productWorkers.computeIfAbsent(product, p -> {
+            log.info("bbc call workers of product {} started with {} threads", p, productPoolSize);
+            return newWorkers(p, productPoolSize);
+        });
+    }
+
+    /**
+     * @return true if calls run on virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    private ExecutorService newWorkers(String owner, int size) {
+        String namePrefix = StrUtil.equals(owner, SHARED_WORKERS) ? "bbc-call-worker-" : StrUtil.format("bbc-call-worker-{}-", owner);
+        ExecutorService executor;
+        if (virtualThreads && StrUtil.equals(owner, SHARED_WORKERS)) {
+            executor = VirtualThreads.newThreadPerTaskExecutor(namePrefix);
+        } else {
+            executor = new ThreadPoolExecutor(
+                    size,
+                    size,
+                    60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    virtualThreads ? VirtualThreads.newThreadFactory(namePrefix) : ThreadFactoryBuilder.create().setNamePrefix(namePrefix).build()
+            );
+        }
+        if (ObjectUtil.isNotNull(meterRegistry)) {
+            new ExecutorServiceMetrics(executor, "bbc-call-worker", Tags.of(BBCCallMetrics.TAG_PRODUCT, owner)).bindTo(meterRegistry);
+        }
+        return executor;
+    }
+
+    private class DomainLane implements Runnable {
+
+        private final String name;
+
+        private final ExecutorService executor;
+
+        private final Queue<Supplier<? extends CompletionStage<?>>> tasks = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger pending = new AtomicInteger(0);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        DomainLane(String name, ExecutorService executor) {
+            this.name = name;
+            this.executor = executor;
+        }
+
+        /**
+         * Called in {@code lanes.compute} before {@link #offer(Supplier)}.
+         */
+        boolean reserve() {
+            if (pending.incrementAndGet() > maxPendingPerLane) {
+                pending.decrementAndGet();
+                log.warn("too many pending bbc calls for {}, reject it", name);
+                return false;
+            }
+            return true;
+        }
+
+        boolean offer(Supplier<? extends CompletionStage<?>> task) {
+            tasks.add(task);
+            try {
+                schedule();
+            } catch (RejectedExecutionException e) {
+                if (tasks.remove(task)) {
+                    release();
+                }
+                log.warn("bbc call for {} rejected by workers", name, e);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Give back the place of a task, and drop the lane if nothing left.
+         */
+        private void release() {
+            if (pending.decrementAndGet() == 0) {
+                lanes.computeIfPresent(name, (key, lane) -> lane == this && pending.get() == 0 ? null : lane);
+            }
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Run only one task and then give the worker back to the pool,
+         * so that busy lanes can not hold the workers forever.
+         */
+        @Override
+        public void run() {
+            Supplier<? extends CompletionStage<?>> task = tasks.poll();
+            if (task == null) {
+                next(false);
+                return;
+            }
+            CompletionStage<?> stage;
+            try {
+                stage = task.get();
+            } catch (Throwable t) {
+                log.error("unexpected error when running bbc call for {}", name, t);
+                next(true);
+                return;
+            }
+            if (stage == null) {
+                next(true);
+                return;
+            }
+            stage.whenComplete((result, t) -> {
+                if (t != null) {
+                    log.error("unexpected error when running bbc call for {}", name, t);
+                }
+                next(true);
+            });
+        }
+
+        /**
+         * Done with the current task, schedule the lane again if any task left.
+         */
+        private void next(boolean taskDone) {
+            if (taskDone) {
+                release();
+            }
+            scheduled.set(false);
+            if (!tasks.isEmpty()) {
+                try {
+                    schedule();
+                } catch (RejectedExecutionException e) {
+                    log.warn("workers shut down with bbc calls left for {}", name);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.dispatch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.hutool.core.util.ObjectUtil;
+import com.alipay.antchain.bridge.pluginserver.server.metrics.BBCCallMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limit the bbc calls in flight for every domain and every product, the calls
+ * over the limit are rejected at once instead of waiting in the lanes.
+ *
+ * <p>
+ * The limit of a domain is fixed to {@code domain.max-in-flight} by default. With
+ * {@code adaptive.enabled}, it starts from {@code domain.max-in-flight} and follows
+ * the latency of the calls: it is cut by {@code adaptive.backoff-ratio} when a call
+ * takes longer than {@code adaptive.latency-threshold}, at most once in a threshold,
+ * and grows by one after a full limit of fast calls, never below {@code adaptive.min-limit}.
+ * The current limits are exposed as {@code pluginserver.bbc.call.limit}.
+ * </p>
+ *
+ * <p>
+ * The state of a domain is dropped once it has no call in flight and its limit is back
+ * to the max, so the domains shut down or mistyped by relayers hold nothing.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BBCCallLimiter {
+
+    private static final Permit NO_LIMIT_PERMIT = new Permit(null, null, null, null, 0);
+
+    @Value("${pluginserver.limit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pluginserver.limit.domain.max-in-flight:256}")
+    private int domainMaxInFlight;
+
+    @Value("${pluginserver.limit.product.max-in-flight:1024}")
+    private int productMaxInFlight;
+
+    @Value("${pluginserver.limit.adaptive.enabled:false}")
+    private boolean adaptiveEnabled;
+
+    @Value("${pluginserver.limit.adaptive.min-limit:4}")
+    private int adaptiveMinLimit;
+
+    @Value("${pluginserver.limit.adaptive.latency-threshold:1000}")
+    private long adaptiveLatencyThreshold;
+
+    @Value("${pluginserver.limit.adaptive.backoff-ratio:0.9}")
+    private double adaptiveBackoffRatio;
+
+    @Value("${pluginserver.limit.reject-with-status:true}")
+    private boolean rejectWithStatus;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, DomainLimit> domainLimits = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> productInFlights = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BBCCallLimiter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Try to take a place for the call, which must be released once the call done.
+     *
+     * @return null if over the limit of the domain or product
+     */
+    public Permit tryAcquire(String product, String domain) {
+        if (!enabled) {
+            return NO_LIMIT_PERMIT;
+        }
+        // places taken in compute, so that the entries are never dropped in between
+        AtomicInteger[] productInFlight = new AtomicInteger[1];
+        productInFlights.compute(product, (p, curr) -> {
+            AtomicInteger inFlight = ObjectUtil.isNull(curr) ? new AtomicInteger(0) : curr;
+            if (inFlight.incrementAndGet() > productMaxInFlight) {
+                inFlight.decrementAndGet();
+            } else {
+                productInFlight[0] = inFlight;
+            }
+            return inFlight.get() == 0 ? null : inFlight;
+        });
+        if (ObjectUtil.isNull(productInFlight[0])) {
+            log.warn("too many bbc calls in flight for product {}, reject it", product);
+            return null;
+        }
+        DomainLimit[] domainLimit = new DomainLimit[1];
+        domainLimits.compute(product + "::" + domain, (key, curr) -> {
+            DomainLimit limit = ObjectUtil.isNull(curr) ? new DomainLimit(key, product, domain) : curr;
+            if (limit.inFlight.incrementAndGet() > limit.getLimit()) {
+                limit.inFlight.decrementAndGet();
+            } else {
+                domainLimit[0] = limit;
+            }
+            return limit.isIdle() ? limit.drop() : limit;
+        });
+        if (ObjectUtil.isNull(domainLimit[0])) {
+            releaseProduct(product, productInFlight[0]);
+            log.warn("too many bbc calls in flight for domain {} of product {}, reject it", domain, product);
+            return null;
+        }
+        return new Permit(this, product, domainLimit[0], productInFlight[0], System.nanoTime());
+    }
+
+    /**
+     * @return number of domains and products with state kept
+     */
+    public int trackedLimits() {
+        return domainLimits.size() + productInFlights.size();
+    }
+
+    private void releaseProduct(String product, AtomicInteger productInFlight) {
+        if (productInFlight.decrementAndGet() == 0) {
+            productInFlights.computeIfPresent(product, (p, curr) -> curr == productInFlight && curr.get() == 0 ? null : curr);
+        }
+    }
+
+    /**
+     * @return true if the rejected unary calls are failed with grpc status
+     * {@code RESOURCE_EXHAUSTED} instead of an error code in response
+     */
+    public boolean isRejectWithStatus() {
+        return rejectWithStatus;
+    }
+
+    private class DomainLimit {
+
+        private final String key;
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+
+        private final Gauge gauge;
+
+        private double limit = domainMaxInFlight;
+
+        private long lastBackoffTime = 0;
+
+        DomainLimit(String key, String product, String domain) {
+            this.key = key;
+            this.gauge = adaptiveEnabled ?
+                    Gauge.builder("pluginserver.bbc.call.limit", this, DomainLimit::getLimit)
+                            .description("max bbc calls in flight for the domain")
+                            .tags(BBCCallMetrics.TAG_PRODUCT, product, BBCCallMetrics.TAG_DOMAIN, domain)
+                            .register(meterRegistry) : null;
+        }
+
+        synchronized int getLimit() {
+            return (int) limit;
+        }
+
+        /**
+         * @return true if nothing worth keeping, a backed off limit is kept until it grows back
+         */
+        synchronized boolean isIdle() {
+            return inFlight.get() == 0 && limit >= domainMaxInFlight;
+        }
+
+        /**
+         * @return null to remove it in compute
+         */
+        DomainLimit drop() {
+            if (ObjectUtil.isNotNull(gauge)) {
+                meterRegistry.remove(gauge);
+            }
+            return null;
+        }
+
+        void release(long latencyNanos) {
+            inFlight.decrementAndGet();
+            onDone(latencyNanos);
+            if (isIdle()) {
+                domainLimits.computeIfPresent(key, (k, curr) -> curr == this && isIdle() ? drop() : curr);
+            }
+        }
+
+        synchronized void onDone(long latencyNanos) {
+            if (!adaptiveEnabled) {
+                return;
+            }
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            if (latencyMillis > adaptiveLatencyThreshold) {
+                long now = System.currentTimeMillis();
+                if (now - lastBackoffTime > adaptiveLatencyThreshold) {
+                    limit = Math.max(adaptiveMinLimit, limit * adaptiveBackoffRatio);
+                    lastBackoffTime = now;
+                }
+            } else {
+                limit = Math.min(domainMaxInFlight, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    /**
+     * A place taken by one call.
+     */
+    public static class Permit {
+
+        private final BBCCallLimiter limiter;
+
+        private final String product;
+
+        private final DomainLimit domainLimit;
+
+        private final AtomicInteger productInFlight;
+
+        private final long startTime;
+
+        private Permit(BBCCallLimiter limiter, String product, DomainLimit domainLimit, AtomicInteger productInFlight, long startTime) {
+            this.limiter = limiter;
+            this.product = product;
+            this.domainLimit = domainLimit;
+            this.productInFlight = productInFlight;
+            this.startTime = startTime;
+        }
+
+        /**
+         * Give the place back once the call done, the latency feeds the adaptive limit.
+         */
+        public void release() {
+            if (ObjectUtil.isNull(domainLimit)) {
+                return;
+            }
+            domainLimit.release(System.nanoTime() - startTime);
+            limiter.releaseProduct(product, productInFlight);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a bbc call can not go on, carrying the error code
+ * to return to the relayer.
+ */
+@Getter
+public class BBCCallException extends RuntimeException {
+
+    private final ServerErrorCodeEnum errorCode;
+
+    public BBCCallException(ServerErrorCodeEnum errorCode, String longMsg) {
+        super(longMsg);
+        this.errorCode = errorCode;
+    }
+
+    public BBCCallException(ServerErrorCodeEnum errorCode, String longMsg, Throwable cause) {
+        super(longMsg, cause);
+        this.errorCode = errorCode;
+    }
+}
@@ -16,6 +16,9 @@
 
 package com.alipay.antchain.bridge.pluginserver.server.exception;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import lombok.Getter;
 
 @Getter
@@ -62,6 +65,16 @@ public enum ServerErrorCodeEnum {
 
     BBC_PLUGIN_NOT_SUPPORT(218, "[bbc] none plugin found"),
 
+    BBC_CALL_REJECTED(219, "[bbc] too many pending calls for this domain"),
+
+    BBC_BATCH_TOO_LARGE(220, "[bbc] too many requests in one batch"),
+
+    BBC_SESSION_ERROR(221, "[bbc] bbc session not opened or opened twice"),
+
+    BBC_CALL_OVERLOADED(222, "[bbc] too many calls in flight, retry later"),
+
+    BBC_CALL_CANCELLED(223, "[bbc] call cancelled or deadline exceeded"),
+
     UNSUPPORT_MANAGE_REQUEST_ERROR(300, "unsupport manage request type"),
 
     MANAGE_LOAD_PLUGINS_ERROR(301, "[manage] load plugins failed"),
@@ -82,6 +95,8 @@ public enum ServerErrorCodeEnum {
 
     MANAGE_RESTART_BBC_ERROR(309, "[manage] restart bbc failed"),
 
+    MANAGE_RECOVER_DOMAINS_ERROR(310, "[manage] recover domains failed"),
+
     UNKNOWN_ERROR(100, "unknow error");
 
     /**
@@ -98,4 +113,19 @@ public enum ServerErrorCodeEnum {
         this.errorCode = errorCode;
         this.shortMsg = shortMsg;
     }
+
+    private static final Map<Integer, ServerErrorCodeEnum> CODE_MAP = new HashMap<>();
+
+    static {
+        for (ServerErrorCodeEnum codeEnum : values()) {
+            CODE_MAP.put(codeEnum.errorCode, codeEnum);
+        }
+    }
+
+    /**
+     * @return the enum of the code, or {@link #UNKNOWN_ERROR} if not found
+     */
+    public static ServerErrorCodeEnum parseFromErrorCode(int errorCode) {
+        return CODE_MAP.getOrDefault(errorCode, UNKNOWN_ERROR);
+    }
 }
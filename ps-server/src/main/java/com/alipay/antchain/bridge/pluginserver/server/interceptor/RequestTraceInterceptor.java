@@ -19,12 +19,18 @@ public class RequestTraceInterceptor implements ServerInterceptor {
             } else {
                 log.info("heartbeat from relayer {}:{}", clientAddr.getHostString(), clientAddr.getPort());
             }
-        } else if (StrUtil.equalsIgnoreCase(call.getMethodDescriptor().getBareMethodName(), "bbcCall")) {
+        } else if (StrUtil.equalsAnyIgnoreCase(call.getMethodDescriptor().getBareMethodName(), "bbcCall", "batchBbcCall", "bbcCallSession")) {
             if (ObjectUtil.isNull(clientAddr)) {
                 log.debug("bbc call from relayer without address found");
             } else {
                 log.debug("bbc call from relayer {}:{}", clientAddr.getHostString(), clientAddr.getPort());
             }
+        } else if (StrUtil.equalsIgnoreCase(call.getMethodDescriptor().getBareMethodName(), "readCrossChainMessagesByHeightRange")) {
+            if (ObjectUtil.isNull(clientAddr)) {
+                log.debug("read messages range from relayer without address found");
+            } else {
+                log.debug("read messages range from relayer {}:{}", clientAddr.getHostString(), clientAddr.getPort());
+            }
         }
 
         return next.startCall(call, headers);
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.interceptor;
+
+import cn.hutool.core.util.ObjectUtil;
+import com.alipay.antchain.bridge.pluginserver.server.compression.ResponseCompression;
+import io.grpc.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Choose the codec of each call by the {@code grpc-accept-encoding} of the client, and
+ * compress only the responses large enough.
+ */
+@Component
+public class ResponseCompressionInterceptor implements ServerInterceptor {
+
+    private final ResponseCompression responseCompression;
+
+    @Autowired
+    public ResponseCompressionInterceptor(ResponseCompression responseCompression) {
+        this.responseCompression = responseCompression;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+        if (!responseCompression.isEnabled()) {
+            return next.startCall(call, headers);
+        }
+        String messageEncoding = responseCompression.negotiate(headers);
+        if (ObjectUtil.isNotNull(messageEncoding)) {
+            // set before the headers sent, messages are compressed or not one by one then
+            call.setCompression(messageEncoding);
+        }
+        return next.startCall(
+                new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+                    @Override
+                    public void sendMessage(RespT message) {
+                        boolean compress = ObjectUtil.isNotNull(messageEncoding) && responseCompression.shouldCompress(message);
+                        setMessageCompression(compress);
+                        responseCompression.countResponse(compress ? messageEncoding : ResponseCompression.IDENTITY);
+                        super.sendMessage(message);
+                    }
+                },
+                headers
+        );
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.IPluginManagerWrapper;
+import com.alipay.antchain.bridge.pluginserver.server.exception.ServerErrorCodeEnum;
+import com.alipay.antchain.bridge.pluginserver.service.CallBBCRequest;
+import com.alipay.antchain.bridge.pluginserver.service.Response;
+import com.google.protobuf.Descriptors;
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Metrics of the bbc calls, tagged with product, domain and request case.
+ *
+ * <p>
+ * Histogram buckets of the latency are configured with
+ * {@code management.metrics.distribution.*} of spring boot.
+ * </p>
+ *
+ * <p>
+ * The product and domain come from the relayer, so only the domains with a running
+ * bbc service and the supported products are used as tags, and the others are
+ * collapsed into {@code unknown}, which keeps the number of meters bounded.
+ * A domain starting up is counted as {@code unknown} until its service is running,
+ * and the meters of a domain are removed once it shut down.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code pluginserver.bbc.call}: latency from the call received to the response built,
+ *     including the time waiting in the dispatcher lane</li>
+ *     <li>{@code pluginserver.bbc.call.errors}: failed calls tagged with the name of {@link ServerErrorCodeEnum}</li>
+ *     <li>{@code pluginserver.bbc.call.in.flight}: calls received but not responded for the domain</li>
+ *     <li>{@code pluginserver.bbc.call.bytes}: serialized size of the requests and responses</li>
+ *     <li>{@code pluginserver.bbc.call.coalesced}: calls sharing the response of an identical call in flight</li>
+ * </ul>
+ */
+@Component
+public class BBCCallMetrics {
+
+    public static final String TAG_PRODUCT = "product";
+
+    public static final String TAG_DOMAIN = "domain";
+
+    public static final String TAG_CASE = "case";
+
+    public static final String UNKNOWN = "unknown";
+
+    private static final Map<CallBBCRequest.RequestCase, String> CASE_NAMES = new EnumMap<>(CallBBCRequest.RequestCase.class);
+
+    static {
+        for (CallBBCRequest.RequestCase requestCase : CallBBCRequest.RequestCase.values()) {
+            Descriptors.FieldDescriptor field = CallBBCRequest.getDescriptor().findFieldByNumber(requestCase.getNumber());
+            CASE_NAMES.put(requestCase, ObjectUtil.isNull(field) ? UNKNOWN : field.getName());
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    private final IPluginManagerWrapper pluginManagerWrapper;
+
+    private final Map<String, CallMeters> callMetersMap = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> inFlightMap = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BBCCallMetrics(MeterRegistry meterRegistry, IPluginManagerWrapper pluginManagerWrapper) {
+        this.meterRegistry = meterRegistry;
+        this.pluginManagerWrapper = pluginManagerWrapper;
+    }
+
+    /**
+     * Start timing the call once it is received.
+     */
+    public Sample start(CallBBCRequest request) {
+        String product = request.getProduct();
+        String domain = request.getDomain();
+        // both lookups are lock-free, never waiting for the plugin operations
+        if (ObjectUtil.isNull(pluginManagerWrapper.getCachedBBCService(product, domain))) {
+            domain = UNKNOWN;
+            if (!pluginManagerWrapper.isSupportedProduct(product)) {
+                product = UNKNOWN;
+            }
+        }
+        String caseName = CASE_NAMES.get(request.getRequestCase());
+        String productTag = product;
+        String domainTag = domain;
+        CallMeters callMeters = callMetersMap.computeIfAbsent(
+                caseName + "::" + productTag + "::" + domainTag,
+                k -> new CallMeters(productTag, domainTag, caseName)
+        );
+        callMeters.inFlight.incrementAndGet();
+        callMeters.bytesIn.record(request.getSerializedSize());
+        return new Sample(callMeters, System.nanoTime());
+    }
+
+    /**
+     * Remove the meters of the domain shut down from the registry.
+     * The calls still in flight for the domain are recorded to the removed meters.
+     */
+    public void remove(String product, String domain) {
+        if (StrUtil.equals(UNKNOWN, domain)) {
+            return;
+        }
+        callMetersMap.values().removeIf(callMeters -> {
+            if (!callMeters.isOf(product, domain)) {
+                return false;
+            }
+            callMeters.removed = true;
+            return true;
+        });
+        inFlightMap.remove(product + "::" + domain);
+        for (Meter meter : meterRegistry.getMeters()) {
+            Meter.Id id = meter.getId();
+            if (id.getName().startsWith("pluginserver.bbc.call")
+                    && StrUtil.equals(product, id.getTag(TAG_PRODUCT))
+                    && StrUtil.equals(domain, id.getTag(TAG_DOMAIN))) {
+                meterRegistry.remove(meter);
+            }
+        }
+    }
+
+    private AtomicInteger getInFlight(String product, String domain) {
+        return inFlightMap.computeIfAbsent(
+                product + "::" + domain,
+                k -> meterRegistry.gauge(
+                        "pluginserver.bbc.call.in.flight",
+                        Tags.of(TAG_PRODUCT, product, TAG_DOMAIN, domain),
+                        new AtomicInteger(0)
+                )
+        );
+    }
+
+    private class CallMeters {
+
+        private final String product;
+
+        private final String domain;
+
+        private final Tags tags;
+
+        private final Timer timer;
+
+        private final DistributionSummary bytesIn;
+
+        private final DistributionSummary bytesOut;
+
+        private final AtomicInteger inFlight;
+
+        private final Counter coalesced;
+
+        private final Map<ServerErrorCodeEnum, Counter> errors = new ConcurrentHashMap<>();
+
+        private volatile boolean removed = false;
+
+        CallMeters(String product, String domain, String caseName) {
+            this.product = product;
+            this.domain = domain;
+            this.tags = Tags.of(TAG_PRODUCT, product, TAG_DOMAIN, domain, TAG_CASE, caseName);
+            this.timer = Timer.builder("pluginserver.bbc.call")
+                    .description("latency of bbc calls")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.bytesIn = buildBytesSummary("in");
+            this.bytesOut = buildBytesSummary("out");
+            this.inFlight = getInFlight(product, domain);
+            this.coalesced = Counter.builder("pluginserver.bbc.call.coalesced")
+                    .description("bbc calls sharing the response of an identical call")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        private DistributionSummary buildBytesSummary(String direction) {
+            return DistributionSummary.builder("pluginserver.bbc.call.bytes")
+                    .description("serialized size of bbc requests and responses")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .tag("direction", direction)
+                    .register(meterRegistry);
+        }
+
+        private boolean isOf(String product, String domain) {
+            return StrUtil.equals(this.product, product) && StrUtil.equals(this.domain, domain);
+        }
+
+        private Counter getErrorCounter(ServerErrorCodeEnum errorCode) {
+            return errors.computeIfAbsent(
+                    errorCode,
+                    code -> Counter.builder("pluginserver.bbc.call.errors")
+                            .description("failed bbc calls")
+                            .tags(tags)
+                            .tag("code", code.name())
+                            .register(meterRegistry)
+            );
+        }
+    }
+
+    /**
+     * One bbc call being timed.
+     */
+    public static class Sample {
+
+        private final CallMeters callMeters;
+
+        private final long startTime;
+
+        private Sample(CallMeters callMeters, long startTime) {
+            this.callMeters = callMeters;
+            this.startTime = startTime;
+        }
+
+        /**
+         * Mark the call as served by an identical call in flight.
+         */
+        public void coalesced() {
+            callMeters.coalesced.increment();
+        }
+
+        /**
+         * Stop timing with the response to send.
+         *
+         * @param response null if no response would be sent
+         * @return the response passed in
+         */
+        public Response stop(Response response) {
+            callMeters.timer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            callMeters.inFlight.decrementAndGet();
+            if (ObjectUtil.isNotNull(response)) {
+                callMeters.bytesOut.record(response.getSerializedSize());
+                // never register the counters again for the domain removed
+                if (response.getCode() != ServerErrorCodeEnum.SUCCESS.getErrorCode() && !callMeters.removed) {
+                    callMeters.getErrorCounter(ServerErrorCodeEnum.parseFromErrorCode(response.getCode())).increment();
+                }
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.recovery;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ObjectUtil;
+import com.alipay.antchain.bridge.commons.bbc.AbstractBBCContext;
+import com.alipay.antchain.bridge.commons.bbc.DefaultBBCContext;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryScheduler;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.DomainRecoveryTask;
+import com.alipay.antchain.bridge.pluginserver.pluginmanager.IPluginManagerWrapper;
+import com.alipay.antchain.bridge.pluginserver.server.cache.HeightMessagesCache;
+import com.alipay.antchain.bridge.pluginserver.server.cache.LatestHeightTracker;
+import com.alipay.antchain.bridge.pluginserver.server.cache.ReceiptCache;
+import com.alipay.antchain.bridge.pluginserver.server.dispatch.BBCCallDispatcher;
+import com.alipay.antchain.bridge.pluginserver.server.store.BBCContextStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Start the bbc services of domains in bulk through {@link DomainRecoveryScheduler}.
+ *
+ * <p>
+ * On boot, the domains saved in {@link BBCContextStore} are started again, so that the
+ * relayers need not to send {@code startUp} after the plugin server restarts, and those
+ * of a plugin loading in background wait for it. After a
+ * plugin reloaded, the running domains of its product can be restarted from their current
+ * contexts. Every start runs in the dispatcher lane of the domain, so it is ordered with
+ * the calls from relayers.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BBCDomainRecovery {
+
+    @Value("${pluginserver.context-store.recover.enabled:true}")
+    private boolean recoverOnBoot;
+
+    @Resource
+    private BBCContextStore bbcContextStore;
+
+    @Resource
+    private IPluginManagerWrapper pluginManagerWrapper;
+
+    @Resource
+    private BBCCallDispatcher bbcCallDispatcher;
+
+    @Resource
+    private DomainRecoveryScheduler domainRecoveryScheduler;
+
+    @Resource
+    private HeightMessagesCache heightMessagesCache;
+
+    @Resource
+    private LatestHeightTracker latestHeightTracker;
+
+    @Resource
+    private ReceiptCache receiptCache;
+
+    @PostConstruct
+    public void init() {
+        if (!recoverOnBoot || !bbcContextStore.isEnabled()) {
+            return;
+        }
+        List<BBCContextStore.ContextSnapshot> snapshots = bbcContextStore.snapshots();
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        log.info("recovering {} domains from bbc context store", snapshots.size());
+        // the domains of a plugin still loading in background are queued once it is ready
+        snapshots.stream()
+                .collect(Collectors.groupingBy(BBCContextStore.ContextSnapshot::getProduct))
+                .forEach((product, productSnapshots) -> pluginManagerWrapper.awaitPlugin(product).thenRun(
+                        () -> domainRecoveryScheduler.submit(
+                                productSnapshots.stream()
+                                        .map(snapshot -> newTask(product, snapshot.getDomain(), () -> startSaved(snapshot)))
+                                        .collect(Collectors.toList())
+                        )
+                ));
+    }
+
+    /**
+     * Restart the services of the domains from their current contexts in background,
+     * e.g. after the plugin of the product reloaded.
+     *
+     * @param domains all running domains of the product if empty
+     * @return number of domains queued
+     */
+    public int restartDomains(String product, List<String> domains) {
+        List<String> targets = CollUtil.isEmpty(domains) ? pluginManagerWrapper.allRunningDomains(product) : domains;
+        domainRecoveryScheduler.submit(
+                targets.stream()
+                        .distinct()
+                        .map(domain -> newTask(product, domain, () -> restart(product, domain)))
+                        .collect(Collectors.toList())
+        );
+        return (int) targets.stream().distinct().count();
+    }
+
+    private DomainRecoveryTask newTask(String product, String domain, Callable<Boolean> action) {
+        return new DomainRecoveryTask(
+                product,
+                domain,
+                bbcContextStore.getLastActiveTime(product, domain),
+                () -> callInLane(product, domain, action)
+        );
+    }
+
+    private boolean callInLane(String product, String domain, Callable<Boolean> action) throws Exception {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        boolean accepted = bbcCallDispatcher.dispatch(product, domain, () -> {
+            try {
+                future.complete(action.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        if (!accepted) {
+            throw new IllegalStateException("too many pending calls for the domain");
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private boolean startSaved(BBCContextStore.ContextSnapshot snapshot) {
+        String product = snapshot.getProduct();
+        String domain = snapshot.getDomain();
+        if (pluginManagerWrapper.hasDomain(domain)) {
+            log.info("domain started already, skip the recovery [product: {}, domain: {}]", product, domain);
+            return false;
+        }
+        if (!pluginManagerWrapper.hasPlugin(product)) {
+            log.warn("plugin not found, skip the recovery [product: {}, domain: {}]", product, domain);
+            return false;
+        }
+        long startTime = System.currentTimeMillis();
+        IBBCService bbcService = pluginManagerWrapper.createBBCService(product, domain);
+        DefaultBBCContext ctx = new DefaultBBCContext();
+        ctx.decodeFromBytes(snapshot.getRawContext());
+        bbcService.startup(ctx);
+        bbcContextStore.saveContext(product, domain, bbcService);
+        log.info("domain recovered in {} ms [product: {}, domain: {}]", System.currentTimeMillis() - startTime, product, domain);
+        return true;
+    }
+
+    private boolean restart(String product, String domain) {
+        if (!pluginManagerWrapper.hasDomain(domain)) {
+            log.warn("domain not running, skip the restart [product: {}, domain: {}]", product, domain);
+            return false;
+        }
+        long startTime = System.currentTimeMillis();
+        IBBCService oldBbcService = pluginManagerWrapper.getBBCService(product, domain);
+        if (ObjectUtil.isNull(oldBbcService)) {
+            throw new IllegalStateException("null bbc service for domain " + domain);
+        }
+        AbstractBBCContext ctx = oldBbcService.getContext();
+        IBBCService newBbcService = pluginManagerWrapper.createBBCService(product, domain);
+        try {
+            newBbcService.startup(ctx);
+        } catch (Throwable t) {
+            // the old service is still running, keep serving with it
+            pluginManagerWrapper.restoreBBCService(product, domain, oldBbcService);
+            shutdownQuietly(newBbcService, product, domain);
+            throw t;
+        }
+        heightMessagesCache.invalidate(product, domain);
+        latestHeightTracker.untrack(product, domain);
+        receiptCache.invalidate(product, domain);
+        bbcContextStore.saveContext(product, domain, newBbcService);
+        // release the chain clients of the old service, not reachable any more
+        shutdownQuietly(oldBbcService, product, domain);
+        log.info("domain restarted in {} ms [product: {}, domain: {}]", System.currentTimeMillis() - startTime, product, domain);
+        return true;
+    }
+
+    private static void shutdownQuietly(IBBCService bbcService, String product, String domain) {
+        try {
+            bbcService.shutdown();
+        } catch (Throwable t) {
+            log.warn("failed to shut down bbc service [product: {}, domain: {}]", product, domain, t);
+        }
+    }
+}
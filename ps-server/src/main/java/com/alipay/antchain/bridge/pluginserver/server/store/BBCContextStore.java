@@ -0,0 +1,374 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.store;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.ObjectUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alipay.antchain.bridge.plugins.spi.bbc.IBBCService;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keep the latest context of every started domain in a local file, so that the
+ * domains can be started again from it when the plugin server restarts.
+ *
+ * <p>
+ * The file is append-only: every change of a domain is appended as a record with
+ * its CRC, and a torn record at the tail, e.g. written when the process killed, is
+ * dropped on load. The file is compacted to the latest records on boot and every
+ * {@code compact-interval} if there are stale records.
+ * </p>
+ *
+ * <p>
+ * The contexts hold the configuration of the chain clients, e.g. their keys, in
+ * plaintext, so the file is readable and writable by the owner only.
+ * </p>
+ *
+ * <p>
+ * The time of the last call for every domain is tracked in memory, and saved with
+ * the context on compaction, so that the domains with recent traffic recover first.
+ * It only orders the recovery, so a compaction for it alone runs at most every
+ * {@code activity-persist-interval}, not on every {@code compact-interval}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class BBCContextStore {
+
+    private static final byte OP_SAVE = 1;
+
+    private static final byte OP_REMOVE = 2;
+
+    @Value("${pluginserver.context-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${pluginserver.context-store.path:./data/contexts.log}")
+    private String path;
+
+    @Value("${pluginserver.context-store.compact-interval:60000}")
+    private long compactInterval;
+
+    @Value("${pluginserver.context-store.activity-persist-interval:1800000}")
+    private long activityPersistInterval;
+
+    private final Map<String, ContextSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, AtomicLong>> lastActiveTimes = new ConcurrentHashMap<>();
+
+    private volatile boolean activityChanged;
+
+    private Path storePath;
+
+    private FileOutputStream appender;
+
+    private int staleRecords;
+
+    private long lastCompactTime;
+
+    private ScheduledExecutorService compactor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        this.storePath = Paths.get(path).toAbsolutePath();
+        FileUtil.mkParentDirs(storePath.toFile());
+        load();
+        compact();
+        this.compactor = Executors.newSingleThreadScheduledExecutor(
+                ThreadFactoryBuilder.create().setNamePrefix("context-store-compactor-").setDaemon(true).build()
+        );
+        compactor.scheduleWithFixedDelay(this::compactIfStale, compactInterval, compactInterval, TimeUnit.MILLISECONDS);
+        log.info("bbc context store loaded {} domains from {}", snapshots.size(), storePath);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (ObjectUtil.isNotNull(compactor)) {
+            compactor.shutdownNow();
+        }
+        IoUtil.close(appender);
+        appender = null;
+        lastActiveTimes.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Mark the domain active now, called for every bbc call to a running service, or after
+     * a successful startup, so only the domains started are tracked and it allocates nothing
+     * once tracked.
+     */
+    public void touch(String product, String domain) {
+        if (!enabled) {
+            return;
+        }
+        getActivity(product, domain).set(System.currentTimeMillis());
+        activityChanged = true;
+    }
+
+    /**
+     * @return time of the last call for the domain, zero if unknown
+     */
+    public long getLastActiveTime(String product, String domain) {
+        Map<String, AtomicLong> domainTimes = lastActiveTimes.get(product);
+        AtomicLong time = ObjectUtil.isNull(domainTimes) ? null : domainTimes.get(domain);
+        return ObjectUtil.isNull(time) ? 0 : time.get();
+    }
+
+    /**
+     * Save the current context of the service, failures are logged only
+     * since the service works well without the store.
+     */
+    public void saveContext(String product, String domain, IBBCService bbcService) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            save(product, domain, bbcService.getContext().encodeToBytes());
+        } catch (Exception e) {
+            log.warn("failed to save bbc context [product: {}, domain: {}]", product, domain, e);
+        }
+    }
+
+    public synchronized void save(String product, String domain, byte[] rawContext) throws IOException {
+        append(OP_SAVE, product, domain, getLastActiveTime(product, domain), rawContext);
+        if (ObjectUtil.isNotNull(snapshots.put(getDomainKey(product, domain), new ContextSnapshot(product, domain, rawContext)))) {
+            staleRecords++;
+        }
+    }
+
+    /**
+     * Forget the domain, e.g. when it shut down, failures are logged only.
+     */
+    public synchronized void remove(String product, String domain) {
+        if (!enabled) {
+            return;
+        }
+        lastActiveTimes.computeIfPresent(product, (p, domainTimes) -> {
+            domainTimes.remove(domain);
+            return domainTimes.isEmpty() ? null : domainTimes;
+        });
+        if (!snapshots.containsKey(getDomainKey(product, domain))) {
+            return;
+        }
+        try {
+            append(OP_REMOVE, product, domain, 0, new byte[0]);
+            snapshots.remove(getDomainKey(product, domain));
+            // both the save and remove records are stale now
+            staleRecords += 2;
+        } catch (Exception e) {
+            log.warn("failed to remove bbc context [product: {}, domain: {}]", product, domain, e);
+        }
+    }
+
+    /**
+     * @return the latest contexts of the domains
+     */
+    public List<ContextSnapshot> snapshots() {
+        return new ArrayList<>(snapshots.values());
+    }
+
+    /**
+     * Rewrite the file with the latest records only.
+     */
+    public synchronized void compact() throws IOException {
+        Path tmpPath = storePath.resolveSibling(storePath.getFileName() + ".compacting");
+        // the file takes the permissions of the temp file when moved
+        createOwnerOnly(tmpPath);
+        try (FileOutputStream out = new FileOutputStream(tmpPath.toFile())) {
+            for (ContextSnapshot snapshot : snapshots.values()) {
+                out.write(encodeRecord(
+                        OP_SAVE,
+                        snapshot.getProduct(),
+                        snapshot.getDomain(),
+                        getLastActiveTime(snapshot.getProduct(), snapshot.getDomain()),
+                        snapshot.getRawContext()
+                ));
+            }
+            out.getFD().sync();
+        }
+        IoUtil.close(appender);
+        try {
+            Files.move(tmpPath, storePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // keep appending to the old file if the move failed
+            this.appender = new FileOutputStream(storePath.toFile(), true);
+        }
+        log.debug("bbc context store compacted, {} stale records dropped", staleRecords);
+        this.staleRecords = 0;
+        this.activityChanged = false;
+        this.lastCompactTime = System.currentTimeMillis();
+    }
+
+    private void compactIfStale() {
+        try {
+            synchronized (this) {
+                boolean activityStale = activityChanged && System.currentTimeMillis() - lastCompactTime >= activityPersistInterval;
+                if ((staleRecords > 0 || activityStale) && ObjectUtil.isNotNull(appender)) {
+                    compact();
+                }
+            }
+        } catch (Exception e) {
+            log.warn("failed to compact bbc context store {}", storePath, e);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(storePath)) {
+            return;
+        }
+        long fileSize = Files.size(storePath);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(storePath)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (length < 0 || length > fileSize) {
+                    log.warn("bbc context store {} has a broken record, drop the rest", storePath);
+                    return;
+                }
+                try {
+                    long crc = in.readLong();
+                    byte[] body = new byte[length];
+                    in.readFully(body);
+                    if (crc != crc32(body)) {
+                        log.warn("bbc context store {} has a broken record, drop the rest", storePath);
+                        return;
+                    }
+                    applyRecord(body);
+                } catch (EOFException e) {
+                    log.warn("bbc context store {} has a torn record at the tail, drop it", storePath);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void applyRecord(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = in.readByte();
+        String product = in.readUTF();
+        String domain = in.readUTF();
+        long lastActiveTime = in.readLong();
+        byte[] rawContext = new byte[in.readInt()];
+        in.readFully(rawContext);
+        if (op == OP_SAVE) {
+            snapshots.put(getDomainKey(product, domain), new ContextSnapshot(product, domain, rawContext));
+            getActivity(product, domain).accumulateAndGet(lastActiveTime, Math::max);
+        } else {
+            snapshots.remove(getDomainKey(product, domain));
+        }
+    }
+
+    private void append(byte op, String product, String domain, long lastActiveTime, byte[] rawContext) throws IOException {
+        if (ObjectUtil.isNull(appender)) {
+            throw new IOException("bbc context store closed");
+        }
+        appender.write(encodeRecord(op, product, domain, lastActiveTime, rawContext));
+        // contexts change only on startup and setup calls, cheap to sync every time
+        appender.getFD().sync();
+    }
+
+    private static byte[] encodeRecord(byte op, String product, String domain, long lastActiveTime, byte[] rawContext) throws IOException {
+        ByteArrayOutputStream bodyOut = new ByteArrayOutputStream();
+        DataOutputStream body = new DataOutputStream(bodyOut);
+        body.writeByte(op);
+        body.writeUTF(product);
+        body.writeUTF(domain);
+        body.writeLong(lastActiveTime);
+        body.writeInt(rawContext.length);
+        body.write(rawContext);
+        byte[] bodyBytes = bodyOut.toByteArray();
+
+        ByteArrayOutputStream recordOut = new ByteArrayOutputStream(bodyBytes.length + 12);
+        DataOutputStream record = new DataOutputStream(recordOut);
+        record.writeInt(bodyBytes.length);
+        record.writeLong(crc32(bodyBytes));
+        record.write(bodyBytes);
+        return recordOut.toByteArray();
+    }
+
+    private static void createOwnerOnly(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+    }
+
+    private static long crc32(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+
+    private AtomicLong getActivity(String product, String domain) {
+        Map<String, AtomicLong> domainTimes = lastActiveTimes.get(product);
+        if (ObjectUtil.isNull(domainTimes)) {
+            domainTimes = lastActiveTimes.computeIfAbsent(product, p -> new ConcurrentHashMap<>());
+        }
+        AtomicLong time = domainTimes.get(domain);
+        return ObjectUtil.isNull(time) ? domainTimes.computeIfAbsent(domain, d -> new AtomicLong()) : time;
+    }
+
+    private static String getDomainKey(String product, String domain) {
+        return StrUtil.format("{}::{}", product, domain);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ContextSnapshot {
+
+        private final String product;
+
+        private final String domain;
+
+        private final byte[] rawContext;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2023 Ant Group
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alipay.antchain.bridge.pluginserver.server.transport;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.ObjectUtil;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transport settings applied to the netty builders of both the plugin server and the
+ * management server.
+ *
+ * <p>
+ * The event loops and the executor are created once and shared by the servers, and
+ * shut down after them. Settings left as zero keep the defaults of grpc, and for the
+ * plugin server the ones set here override those under {@code grpc.server}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class NettyServerTuning {
+
+    @Value("${pluginserver.transport.epoll:false}")
+    private boolean epoll;
+
+    @Value("${pluginserver.transport.boss-threads:0}")
+    private int bossThreads;
+
+    @Value("${pluginserver.transport.worker-threads:0}")
+    private int workerThreads;
+
+    @Value("${pluginserver.transport.executor-threads:0}")
+    private int executorThreads;
+
+    @Value("${pluginserver.transport.max-inbound-message-size:0}")
+    private int maxInboundMessageSize;
+
+    @Value("${pluginserver.transport.flow-control-window:0}")
+    private int flowControlWindow;
+
+    @Value("${pluginserver.transport.keep-alive-time:0}")
+    private long keepAliveTime;
+
+    @Value("${pluginserver.transport.keep-alive-timeout:0}")
+    private long keepAliveTimeout;
+
+    @Value("${pluginserver.transport.permit-keep-alive-time:0}")
+    private long permitKeepAliveTime;
+
+    @Value("${pluginserver.transport.permit-keep-alive-without-calls:false}")
+    private boolean permitKeepAliveWithoutCalls;
+
+    private EventLoopGroup bossGroup;
+
+    private EventLoopGroup workerGroup;
+
+    private Class<? extends ServerChannel> channelType;
+
+    private ExecutorService executor;
+
+    /**
+     * @param serverName only for logging
+     */
+    public synchronized void apply(NettyServerBuilder builder, String serverName) {
+        if (epoll || bossThreads > 0 || workerThreads > 0) {
+            initEventLoops();
+            builder.bossEventLoopGroup(bossGroup)
+                    .workerEventLoopGroup(workerGroup)
+                    .channelType(channelType);
+        }
+        if (executorThreads > 0) {
+            if (ObjectUtil.isNull(executor)) {
+                executor = Executors.newFixedThreadPool(
+                        executorThreads,
+                        ThreadFactoryBuilder.create().setNamePrefix("grpc-executor-").setDaemon(true).build()
+                );
+            }
+            builder.executor(executor);
+        }
+        if (maxInboundMessageSize > 0) {
+            builder.maxInboundMessageSize(maxInboundMessageSize);
+        }
+        if (flowControlWindow > 0) {
+            builder.flowControlWindow(flowControlWindow);
+        }
+        if (keepAliveTime > 0) {
+            builder.keepAliveTime(keepAliveTime, TimeUnit.MILLISECONDS);
+        }
+        if (keepAliveTimeout > 0) {
+            builder.keepAliveTimeout(keepAliveTimeout, TimeUnit.MILLISECONDS);
+        }
+        if (permitKeepAliveTime > 0) {
+            builder.permitKeepAliveTime(permitKeepAliveTime, TimeUnit.MILLISECONDS);
+        }
+        if (permitKeepAliveWithoutCalls) {
+            builder.permitKeepAliveWithoutCalls(true);
+        }
+
+        log.info("transport of {} server [channel: {}, worker threads: {}, executor threads: {}, max inbound message size: {}, flow control window: {}]",
+                serverName,
+                ObjectUtil.isNull(channelType) ? "default" : channelType.getSimpleName(),
+                workerThreads > 0 ? workerThreads : "default",
+                executorThreads > 0 ? executorThreads : "default",
+                maxInboundMessageSize > 0 ? maxInboundMessageSize : "default",
+                flowControlWindow > 0 ? flowControlWindow : "default"
+        );
+    }
+
+    /**
+     * @return true if the servers run on native epoll transport
+     */
+    public synchronized boolean isEpollInUse() {
+        return channelType == EpollServerSocketChannel.class;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (ObjectUtil.isNotNull(bossGroup)) {
+            bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+            workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        }
+        if (ObjectUtil.isNotNull(executor)) {
+            executor.shutdown();
+        }
+    }
+
+    private void initEventLoops() {
+        if (ObjectUtil.isNotNull(bossGroup)) {
+            return;
+        }
+        int bossSize = Math.max(1, bossThreads);
+        // zero means the default of netty, twice the number of cores
+        if (epoll && Epoll.isAvailable()) {
+            bossGroup = new EpollEventLoopGroup(bossSize, newThreadFactory("grpc-boss"));
+            workerGroup = new EpollEventLoopGroup(workerThreads, newThreadFactory("grpc-worker"));
+            channelType = EpollServerSocketChannel.class;
+            return;
+        }
+        if (epoll) {
+            log.warn("native epoll transport not available, fall back to nio", Epoll.unavailabilityCause());
+        }
+        bossGroup = new NioEventLoopGroup(bossSize, newThreadFactory("grpc-boss"));
+        workerGroup = new NioEventLoopGroup(workerThreads, newThreadFactory("grpc-worker"));
+        channelType = NioServerSocketChannel.class;
+    }
+
+    private static ThreadFactory newThreadFactory(String poolName) {
+        // threads of netty make the fast thread locals of the event loops fast
+        return new DefaultThreadFactory(poolName, true);
+    }
+}